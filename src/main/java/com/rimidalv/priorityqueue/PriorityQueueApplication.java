@@ -3,12 +3,14 @@ package com.rimidalv.priorityqueue;
 import com.rimidalv.priorityqueue.demo.ThreadDemo;
 import com.rimidalv.priorityqueue.domain.QueueItem;
 import com.rimidalv.priorityqueue.service.QueueService;
+import com.rimidalv.priorityqueue.utility.LoggingQueueEventListener;
 
 public class PriorityQueueApplication {
 
 
     public static void main(String[] args) throws InterruptedException {
         QueueService queueService = QueueService.getInstance();
+        queueService.setQueueEventListener(new LoggingQueueEventListener());
 
         ThreadDemo T1 = new ThreadDemo( queueService, "Thread-1-enqueue", true);
         T1.start();
@@ -3,12 +3,29 @@ package com.rimidalv.priorityqueue.domain;
 import java.util.Objects;
 
 public class QueueItem<T> {
+    public static final long NO_EXPIRATION = Long.MAX_VALUE;
+
     private T queueItem;
     private int priority;
+    private final long expirationTime;
 
     public QueueItem(int priority, T queueItem) {
+        this(priority, queueItem, NO_EXPIRATION);
+    }
+
+    /**
+     * Creates the item which expires at the specified time, in milliseconds
+     * since the epoch as returned by {@link System#currentTimeMillis()}.
+     * An expired item is discarded by the queue instead of being dequeued.
+     *
+     * @param priority
+     * @param queueItem
+     * @param expirationTime
+     */
+    public QueueItem(int priority, T queueItem, long expirationTime) {
         this.queueItem = queueItem;
         this.priority = priority;
+        this.expirationTime = expirationTime;
     }
 
     public T getQueueItem() {
@@ -27,6 +44,29 @@ public class QueueItem<T> {
         this.priority = priority;
     }
 
+    public long getExpirationTime() {
+        return expirationTime;
+    }
+
+    /**
+     * Checks if the item has an expiration time.
+     *
+     * @return boolean
+     */
+    public boolean isExpiring() {
+        return expirationTime != NO_EXPIRATION;
+    }
+
+    /**
+     * Checks if the item expired at the specified time in milliseconds since the epoch.
+     *
+     * @param now
+     * @return boolean
+     */
+    public boolean isExpired(long now) {
+        return expirationTime <= now;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,397 @@
+package com.rimidalv.priorityqueue.service;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import com.rimidalv.priorityqueue.utility.ExpiredItemRemover;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link BlockingQueue} view of the {@link CustomPriorityQueue}, so the queue can be used
+ * by the JDK concurrency utilities. Elements are retrieved in the burst rate order of the
+ * wrapped queue.
+ * All the access to the wrapped queue must go through this class, otherwise the
+ * waiting threads are not signalled. The delayed items of the wrapped queue are not signalled
+ * when they expire, so the waiting consumers wake up at the next expiration of the delayed items.
+ * The dequeue discards the expired items it meets, so the producers are signalled for all the space
+ * it freed, and the {@link com.rimidalv.priorityqueue.utility.ExpiredItemReaper} of the queue reaps
+ * through this class.
+ *
+ * @param <T> type of the queue item value
+ */
+public class BlockingPriorityQueue<T> extends AbstractQueue<QueueItem<T>>
+        implements BlockingQueue<QueueItem<T>>, ExpiredItemRemover {
+    private final CustomPriorityQueue customPriorityQueue;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    public BlockingPriorityQueue(int maximumCapacity, boolean inDepthSearch) {
+        this(new CustomPriorityQueue(maximumCapacity, inDepthSearch));
+    }
+
+    public BlockingPriorityQueue(CustomPriorityQueue customPriorityQueue) {
+        this.customPriorityQueue = customPriorityQueue;
+    }
+
+    /**
+     * Inserts the item if the queue has a free space.
+     * Returns true if the item was inserted, otherwise false.
+     *
+     * @param queueItem
+     * @return boolean
+     */
+    @Override
+    public boolean offer(QueueItem<T> queueItem) {
+        checkNotNull(queueItem);
+        lock.lock();
+        try {
+            if (!customPriorityQueue.hasFreeCapacity()) return false;
+            this.enqueue(queueItem);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts the item, waiting up to the specified time for a free space.
+     * Returns true if the item was inserted, false if the time elapsed.
+     *
+     * @param queueItem
+     * @param timeout
+     * @param unit
+     * @return boolean
+     * @throws InterruptedException
+     */
+    @Override
+    public boolean offer(QueueItem<T> queueItem, long timeout, TimeUnit unit) throws InterruptedException {
+        checkNotNull(queueItem);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (!customPriorityQueue.hasFreeCapacity()) {
+                if (nanos <= 0) return false;
+                nanos = notFull.awaitNanos(nanos);
+            }
+            this.enqueue(queueItem);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts the item, waiting for a free space if necessary.
+     *
+     * @param queueItem
+     * @throws InterruptedException
+     */
+    @Override
+    public void put(QueueItem<T> queueItem) throws InterruptedException {
+        checkNotNull(queueItem);
+        lock.lockInterruptibly();
+        try {
+            while (!customPriorityQueue.hasFreeCapacity()) {
+                notFull.await();
+            }
+            this.enqueue(queueItem);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts the item which becomes visible to the consumers only after the delay,
+     * if the queue has a free space. The waiting consumers wake up when the item expires.
+     * Returns true if the item was inserted, otherwise false.
+     *
+     * @param queueItem
+     * @param delay
+     * @param unit
+     * @return boolean
+     */
+    public boolean offerDelayed(QueueItem<T> queueItem, long delay, TimeUnit unit) {
+        checkNotNull(queueItem);
+        lock.lock();
+        try {
+            if (!customPriorityQueue.hasFreeCapacity()) return false;
+            customPriorityQueue.enqueue(queueItem, delay, unit);
+            notEmpty.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves and removes the next item in the burst rate order.
+     * Returns null if the queue is empty.
+     *
+     * @return QueueItem
+     */
+    @Override
+    public QueueItem<T> poll() {
+        lock.lock();
+        try {
+            return this.dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves and removes the next item in the burst rate order, waiting up to
+     * the specified time for an item to arrive.
+     * Returns null if the time elapsed.
+     *
+     * @param timeout
+     * @param unit
+     * @return QueueItem
+     * @throws InterruptedException
+     */
+    @Override
+    public QueueItem<T> poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            QueueItem<T> queueItem;
+            while ((queueItem = this.dequeue()) == null) {
+                if (nanos <= 0) return null;
+                nanos = this.awaitNotEmpty(nanos);
+            }
+            return queueItem;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves and removes the next item in the burst rate order, waiting for
+     * an item to arrive if necessary.
+     *
+     * @return QueueItem
+     * @throws InterruptedException
+     */
+    @Override
+    public QueueItem<T> take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            QueueItem<T> queueItem;
+            while ((queueItem = this.dequeue()) == null) {
+                this.awaitNotEmpty(Long.MAX_VALUE);
+            }
+            return queueItem;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the item the next poll would return, without removing it.
+     * Returns null if the queue is empty.
+     *
+     * @return QueueItem
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public QueueItem<T> peek() {
+        lock.lock();
+        try {
+            return customPriorityQueue.peek();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of the items the queue can accept. The delayed items take the space too.
+     *
+     * @return int
+     */
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return customPriorityQueue.getMaximumCapacity() - this.occupiedCapacity();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return customPriorityQueue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super QueueItem<T>> collection) {
+        return this.drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes at most the specified number of items in the burst rate order
+     * and adds them to the collection.
+     * Returns the number of the transferred items.
+     *
+     * @param collection
+     * @param maxElements
+     * @return int
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super QueueItem<T>> collection, int maxElements) {
+        checkNotNull(collection);
+        if (collection == this) throw new IllegalArgumentException("Cannot drain the queue to itself");
+        lock.lock();
+        try {
+            int occupied = this.occupiedCapacity();
+            int drained = customPriorityQueue.drainTo((Collection<? super QueueItem>) (Collection) collection, maxElements);
+            if (this.occupiedCapacity() < occupied) notFull.signalAll();
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof QueueItem)) return false;
+        lock.lock();
+        try {
+            boolean removed = customPriorityQueue.remove((QueueItem) o);
+            if (removed) notFull.signal();
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the expired items, visiting at most the specified number of items,
+     * and signals the waiting producers if it freed space.
+     *
+     * @param maximumVisited
+     * @return int
+     */
+    @Override
+    public int removeExpired(int maximumVisited) {
+        lock.lock();
+        try {
+            int removed = customPriorityQueue.removeExpired(maximumVisited);
+            if (removed > 0) notFull.signalAll();
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the iterator over the snapshot of the queue items in the list order,
+     * from the highest priority to the lowest. The iterator does not reflect
+     * the later changes of the queue.
+     *
+     * @return Iterator
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<QueueItem<T>> iterator() {
+        List<QueueItem<T>> snapshot;
+        lock.lock();
+        try {
+            snapshot = (List<QueueItem<T>>) (List<?>) customPriorityQueue.toList();
+        } finally {
+            lock.unlock();
+        }
+
+        Iterator<QueueItem<T>> snapshotIterator = snapshot.iterator();
+        return new Iterator<QueueItem<T>>() {
+            private QueueItem<T> lastReturned;
+
+            @Override
+            public boolean hasNext() {
+                return snapshotIterator.hasNext();
+            }
+
+            @Override
+            public QueueItem<T> next() {
+                lastReturned = snapshotIterator.next();
+                return lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) throw new IllegalStateException();
+                BlockingPriorityQueue.this.remove(lastReturned);
+                lastReturned = null;
+            }
+        };
+    }
+
+    private void enqueue(QueueItem<T> queueItem) {
+        customPriorityQueue.enqueue(queueItem);
+        notEmpty.signal();
+    }
+
+    /**
+     * Dequeues the next item while holding the lock. The dequeue of the wrapped queue moves
+     * the expired delayed items first. Repeats the dequeue if the scheduling policy points
+     * to a priority without elements. Signals a producer for every freed space, including
+     * the space of the discarded expired items.
+     * Returns null if the queue is empty.
+     */
+    @SuppressWarnings("unchecked")
+    private QueueItem<T> dequeue() {
+        int occupied = this.occupiedCapacity();
+        QueueItem<T> queueItem = customPriorityQueue.dequeue();
+        while (queueItem == null && !customPriorityQueue.isEmpty()) {
+            queueItem = customPriorityQueue.dequeue();
+        }
+        int freed = occupied - this.occupiedCapacity();
+        if (freed == 1) notFull.signal();
+        else if (freed > 1) notFull.signalAll();
+        return queueItem;
+    }
+
+    /**
+     * Returns the space taken in the wrapped queue, by the items and the delayed items.
+     * Moving the expired delayed items to the queue does not change it.
+     *
+     * @return int
+     */
+    private int occupiedCapacity() {
+        return customPriorityQueue.size() + customPriorityQueue.getDelayedSize();
+    }
+
+    /**
+     * Waits on the notEmpty condition up to the specified time, but not longer than until
+     * the next delayed items may expire, since nothing signals their expiration.
+     * Must be called holding the lock. Returns the remaining time.
+     *
+     * @param nanos
+     * @return long
+     * @throws InterruptedException
+     */
+    private long awaitNotEmpty(long nanos) throws InterruptedException {
+        long delayNanos = customPriorityQueue.getNextDelayNanos();
+        if (delayNanos >= nanos) return notEmpty.awaitNanos(nanos);
+        return nanos - delayNanos + notEmpty.awaitNanos(delayNanos);
+    }
+
+    private static void checkNotNull(Object o) {
+        if (o == null) throw new NullPointerException();
+    }
+}
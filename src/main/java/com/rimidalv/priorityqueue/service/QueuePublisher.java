@@ -0,0 +1,139 @@
+package com.rimidalv.priorityqueue.service;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Flow.Publisher} of the items of the {@link QueueService}. The items are pushed to a
+ * subscriber only while it has an outstanding demand, in the burst rate order of the queue.
+ * A subscription waits for the next item with one {@link QueueService#dequeueAsync()} future,
+ * so it does not need a thread and buffers at most one item.
+ * The subscribers compete for the items: every item is delivered to one subscriber.
+ * The signals are delivered on the executor, by default on the thread which made the item
+ * available or requested it, e.g. the producer thread.
+ * The queue has no end, so the subscribers are never completed.
+ */
+public class QueuePublisher implements Flow.Publisher<QueueItem> {
+    private static final Executor CALLING_THREAD = Runnable::run;
+
+    private final QueueService queueService;
+    private final Executor executor;
+    private final Executor requeueExecutor;
+
+    public QueuePublisher(QueueService queueService) {
+        this(queueService, CALLING_THREAD);
+    }
+
+    /**
+     * Creates the publisher which delivers the signals on the executor.
+     * An item returned to the full queue on cancel waits for the free space on the executor too,
+     * or on the common pool if the signals are delivered on the calling thread.
+     *
+     * @param queueService
+     * @param executor
+     */
+    public QueuePublisher(QueueService queueService, Executor executor) {
+        this.queueService = queueService;
+        this.executor = executor;
+        this.requeueExecutor = executor == CALLING_THREAD ? ForkJoinPool.commonPool() : executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super QueueItem> subscriber) {
+        if (subscriber == null) throw new NullPointerException("Subscriber must not be null");
+        subscriber.onSubscribe(new QueueSubscription(subscriber));
+    }
+
+    /**
+     * Subscription of one subscriber. The signals are emitted by a single drain loop at a time:
+     * a signal arriving while the loop runs makes the loop run once more instead of starting another.
+     */
+    private class QueueSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super QueueItem> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pendingSignals = new AtomicInteger();
+        private volatile boolean cancelled;
+        private Throwable error;
+        private CompletableFuture<QueueItem> nextItem;
+
+        QueueSubscription(Flow.Subscriber<? super QueueItem> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested number of items must be positive: " + n);
+                cancelled = true;
+            } else {
+                demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            this.signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            this.signal();
+        }
+
+        private void signal() {
+            if (pendingSignals.getAndIncrement() == 0) executor.execute(this::drain);
+        }
+
+        /**
+         * Delivers the available items while there is a demand and waits for the next one.
+         * On cancel the waiting dequeue is withdrawn; an item which was already taken for
+         * the subscription is returned to the queue without waiting for the admission,
+         * so the cancel returns promptly even if the queue is full.
+         */
+        private void drain() {
+            int signals = pendingSignals.get();
+            while (true) {
+                if (cancelled) {
+                    this.release();
+                } else {
+                    while (demand.get() > 0 && !cancelled) {
+                        if (nextItem == null) {
+                            nextItem = queueService.dequeueAsync();
+                            nextItem.whenComplete((queueItem, throwable) -> this.signal());
+                        }
+                        if (!nextItem.isDone()) break;
+
+                        QueueItem queueItem = nextItem.join();
+                        nextItem = null;
+                        demand.decrementAndGet();
+                        subscriber.onNext(queueItem);
+                    }
+                }
+
+                signals = pendingSignals.addAndGet(-signals);
+                if (signals == 0) return;
+            }
+        }
+
+        private void release() {
+            if (nextItem != null) {
+                CompletableFuture<QueueItem> waitingItem = nextItem;
+                nextItem = null;
+                if (!waitingItem.cancel(false)) waitingItem.thenAccept(this::returnItem);
+            }
+            if (error != null) {
+                Throwable throwable = error;
+                error = null;
+                subscriber.onError(throwable);
+            }
+        }
+
+        private void returnItem(QueueItem queueItem) {
+            if (!queueService.requeue(queueItem))
+                requeueExecutor.execute(() -> queueService.enqueue(queueItem));
+        }
+    }
+}
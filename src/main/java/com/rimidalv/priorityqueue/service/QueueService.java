@@ -2,18 +2,49 @@ package com.rimidalv.priorityqueue.service;
 
 import com.rimidalv.priorityqueue.domain.QueueItem;
 import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import com.rimidalv.priorityqueue.utility.ExpiredItemRemover;
+import com.rimidalv.priorityqueue.utility.QueueEventListener;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import static java.lang.Thread.sleep;
-
-public class QueueService {
+/**
+ * Access to the queue shared by the producers and the consumers. The threads wait on the conditions
+ * of a {@link ReentrantLock}, and the monitor of the queue is entered only holding the lock, so it is
+ * never contended and never held while a thread parks. Consumers which must not block a thread
+ * wait with {@link #dequeueAsync()}.
+ * A dequeue discards the expired elements it meets and may find no element after them, so the waiting
+ * producers are signalled after every dequeue, not only after the one which returned an element.
+ * The {@link com.rimidalv.priorityqueue.utility.ExpiredItemReaper} of the queue reaps through the service.
+ */
+public class QueueService implements ExpiredItemRemover {
     private static final Logger LOGGER = Logger.getLogger( QueueService.class.getName() );
 
     private static QueueService queueService;
+    private static ScheduledExecutorService delayTimerExecutor;
     private CustomPriorityQueue customPriorityQueue;
 
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private long producerTicket;
+    private long admittedTicket;
+    private final ArrayDeque<DequeueFuture> waitingFutures = new ArrayDeque<>();
+    private ScheduledFuture<?> delayTimer;
+    private long delayTimerDeadline;
+    private QueueEventListener eventListener = QueueEventListener.NO_OP;
+
     /**
      * Singleton to create a new instance of the queue access class
      * with the default queue capacity
@@ -65,47 +96,449 @@ public class QueueService {
     }
 
     /**
-     * Method to dequeue an element from the queue. Block the thread if the queue is empty until a new
-     * element arrives.
-     * Returns dequeued queue item if exists, otherwise will call the dequeue method recursively.
+     * Sets the listener of the queue events for this service and the underlying queue.
+     *
+     * @param eventListener
+     */
+    public void setQueueEventListener(QueueEventListener eventListener) {
+        lock.lock();
+        try {
+            this.eventListener = eventListener == null ? QueueEventListener.NO_OP : eventListener;
+            customPriorityQueue.setQueueEventListener(eventListener);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Method to dequeue an element from the queue. Block the thread on the notEmpty condition
+     * if the queue is empty until a new element arrives.
+     * Returns dequeued queue item. If the burst rate points to a priority without elements,
+     * the dequeue is repeated.
      *
      */
     public QueueItem dequeue() {
-        while (customPriorityQueue.isEmpty()) {
-            LOGGER.log(Level.INFO, "Waiting for a new item to process");
-            try {
-                sleep(0);
-            } catch (InterruptedException e) {
-                LOGGER.log(Level.SEVERE, e.getMessage());
+        boolean interrupted = false;
+        lock.lock();
+        try {
+            QueueItem queueItem = null;
+            while (queueItem == null) {
+                interrupted |= this.awaitNotEmpty();
+                queueItem = customPriorityQueue.dequeue();
+                if (admittedTicket != producerTicket) notFull.signalAll();
+            }
+
+            return queueItem;
+        } finally {
+            lock.unlock();
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Method to dequeue an element from the queue, waiting up to the specified time
+     * for a new element to arrive.
+     * Returns dequeued queue item, or null if the time elapsed.
+     *
+     * @param timeout
+     * @param unit
+     * @return QueueItem
+     * @throws InterruptedException
+     */
+    public QueueItem dequeue(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            QueueItem queueItem = null;
+            while (queueItem == null) {
+                long waitStart = 0;
+                while (customPriorityQueue.isEmpty()) {
+                    long delayNanos = customPriorityQueue.getNextDelayNanos();
+                    if (delayNanos <= 0) break;
+                    if (nanos <= 0) return null;
+                    if (waitStart == 0) waitStart = System.nanoTime();
+                    nanos = delayNanos >= nanos
+                            ? notEmpty.awaitNanos(nanos)
+                            : nanos - delayNanos + notEmpty.awaitNanos(delayNanos);
+                }
+                if (waitStart != 0) eventListener.onConsumerWait(System.nanoTime() - waitStart);
+                queueItem = customPriorityQueue.dequeue();
+                if (admittedTicket != producerTicket) notFull.signalAll();
             }
+
+            return queueItem;
+        } finally {
+            lock.unlock();
         }
+    }
 
-        QueueItem queueItem = customPriorityQueue.dequeue();
-        if (queueItem == null) {
-            queueItem = this.dequeue();
+    /**
+     * Method to dequeue a batch of elements from the queue under a single lock acquisition.
+     * Block the thread on the notEmpty condition if the queue is empty until a new element
+     * arrives, then takes up to the specified number of elements in the same order as the
+     * consecutive dequeue calls would.
+     * Returns the number of the elements added to the collection.
+     *
+     * @param collection
+     * @param maxElements
+     * @return int
+     */
+    public int drainTo(Collection<? super QueueItem> collection, int maxElements) {
+        if (maxElements <= 0) return 0;
+
+        boolean interrupted = false;
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained == 0) {
+                interrupted |= this.awaitNotEmpty();
+                drained = customPriorityQueue.drainTo(collection, maxElements);
+                if (admittedTicket != producerTicket) notFull.signalAll();
+            }
+
+            return drained;
+        } finally {
+            lock.unlock();
+            if (interrupted) Thread.currentThread().interrupt();
         }
+    }
 
-        return queueItem;
+    /**
+     * Method to dequeue an element without blocking the calling thread. The returned future is completed
+     * with the next element: immediately if the queue has one, otherwise when an element arrives.
+     * Waiting futures are completed in the order of the calls, before the blocked dequeue calls,
+     * and outside of the lock, on the thread of the producer, or on the timer thread of the service
+     * when a delayed element expires.
+     * Cancelling a waiting future withdraws it from the queue.
+     *
+     * @return CompletableFuture<QueueItem>
+     */
+    public CompletableFuture<QueueItem> dequeueAsync() {
+        DequeueFuture future = new DequeueFuture();
+        QueueItem queueItem = null;
+        lock.lock();
+        try {
+            if (waitingFutures.isEmpty()) {
+                queueItem = customPriorityQueue.dequeue();
+                if (admittedTicket != producerTicket) notFull.signalAll();
+            }
+            if (queueItem == null) {
+                waitingFutures.addLast(future);
+                this.armDelayTimer();
+                return future;
+            }
+        } finally {
+            lock.unlock();
+        }
+        future.complete(queueItem);
+        return future;
     }
 
     /**
      * Enqueue method to insert a new element to the queue.
-     * If the queue is out of capacity, will block the thread until the queue gets a free space.
-     * Will resume the execution on the FIFO basis.
+     * If the queue is out of capacity, will block the thread on the notFull condition
+     * until the queue gets a free space.
+     * Will resume the execution on the FIFO basis: every producer takes a ticket and
+     * is admitted only after all the producers with the earlier tickets.
      *
      */
     public void enqueue(QueueItem queueItem) {
-        while (!customPriorityQueue.hasFreeCapacity()) {
-            LOGGER.log(Level.INFO, "Queue is out of capacity, waiting for free space");
+        boolean interrupted = false;
+        List<DequeueFuture> assignedFutures;
+        lock.lock();
+        try {
+            interrupted = this.awaitAdmission();
+            customPriorityQueue.enqueue(queueItem);
+            assignedFutures = this.assignWaitingFutures();
+
+            notEmpty.signal();
+        } finally {
+            if (admittedTicket != producerTicket) notFull.signalAll();
+            lock.unlock();
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+        completeFutures(assignedFutures);
+    }
+
+    /**
+     * Enqueue method to insert a new element which becomes visible to the consumers only after the delay.
+     * The element takes the space of the queue while it waits, so the producer is admitted on the same
+     * FIFO basis as the enqueue. The blocked consumers wake up when the element expires, and the timer
+     * of the service completes the waiting futures of {@link #dequeueAsync()} with it.
+     *
+     * @param queueItem
+     * @param delay
+     * @param unit
+     */
+    public void enqueueDelayed(QueueItem queueItem, long delay, TimeUnit unit) {
+        boolean interrupted = false;
+        List<DequeueFuture> assignedFutures;
+        lock.lock();
+        try {
+            interrupted = this.awaitAdmission();
+            customPriorityQueue.enqueue(queueItem, delay, unit);
+            assignedFutures = this.assignWaitingFutures();
+            this.armDelayTimer();
+
+            notEmpty.signalAll();
+        } finally {
+            if (admittedTicket != producerTicket) notFull.signalAll();
+            lock.unlock();
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+        completeFutures(assignedFutures);
+    }
+
+    /**
+     * Method to return an element which a consumer took but will not process. The element was admitted
+     * before, so it is inserted at once ahead of the waiting producers and the calling thread never waits.
+     * Returns false if the queue has no free space; then the caller must enqueue the element later.
+     *
+     * @param queueItem
+     * @return boolean
+     */
+    boolean requeue(QueueItem queueItem) {
+        List<DequeueFuture> assignedFutures;
+        lock.lock();
+        try {
+            if (!customPriorityQueue.hasFreeCapacity()) return false;
+            customPriorityQueue.enqueue(queueItem);
+            assignedFutures = this.assignWaitingFutures();
+
+            notEmpty.signal();
+            if (admittedTicket != producerTicket) notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        completeFutures(assignedFutures);
+        return true;
+    }
+
+    /**
+     * Enqueue method to insert a batch of elements to the queue under a single lock acquisition.
+     * If the queue is out of capacity, will block the thread until the queue gets a free space,
+     * on the same FIFO basis as the single element enqueue, and inserts as many elements as fit.
+     * Returns the number of the inserted elements.
+     *
+     * @param queueItems
+     * @return int
+     */
+    public int enqueueAll(Collection<? extends QueueItem> queueItems) {
+        if (queueItems.isEmpty()) return 0;
+
+        boolean interrupted = false;
+        List<DequeueFuture> assignedFutures;
+        int accepted;
+        lock.lock();
+        try {
+            interrupted = this.awaitAdmission();
+            accepted = customPriorityQueue.enqueueAll(queueItems);
+            assignedFutures = this.assignWaitingFutures();
+
+            notEmpty.signalAll();
+        } finally {
+            if (admittedTicket != producerTicket) notFull.signalAll();
+            lock.unlock();
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+        completeFutures(assignedFutures);
+        return accepted;
+    }
+
+    /**
+     * Method removes the expired elements, visiting at most the specified number of elements,
+     * and signals the waiting producers if it freed space.
+     *
+     * @param maximumVisited
+     * @return int
+     */
+    @Override
+    public int removeExpired(int maximumVisited) {
+        lock.lock();
+        try {
+            int removed = customPriorityQueue.removeExpired(maximumVisited);
+            if (removed > 0 && admittedTicket != producerTicket) notFull.signalAll();
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Method returns the number of the elements in the queue, without the delayed elements.
+     *
+     * @return int
+     */
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return customPriorityQueue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Dequeues an element for every waiting future while the queue has elements, including the expired
+     * delayed elements, which the dequeue moves to the queue. The futures are completed by the caller
+     * after releasing the lock. Must be called holding the lock.
+     * Returns null if no future was assigned.
+     *
+     * @return List<DequeueFuture>
+     */
+    private List<DequeueFuture> assignWaitingFutures() {
+        List<DequeueFuture> assignedFutures = null;
+        while (!waitingFutures.isEmpty()) {
+            DequeueFuture future = waitingFutures.pollFirst();
+            if (future.isDone()) continue;
+
+            QueueItem queueItem = customPriorityQueue.dequeue();
+            if (queueItem == null) {
+                waitingFutures.addFirst(future);
+                break;
+            }
+            future.assignedItem = queueItem;
+            if (assignedFutures == null) assignedFutures = new ArrayList<>();
+            assignedFutures.add(future);
+        }
+        return assignedFutures;
+    }
+
+    /**
+     * Schedules the completion of the waiting futures when the next delayed element expires,
+     * unless an earlier completion is scheduled already. One timer thread serves all the services.
+     * Must be called holding the lock.
+     */
+    private void armDelayTimer() {
+        if (waitingFutures.isEmpty()) return;
+        long delayNanos = customPriorityQueue.getNextDelayNanos();
+        if (delayNanos == Long.MAX_VALUE) return;
+
+        long deadline = System.nanoTime() + delayNanos;
+        if (delayTimer != null && deadline - delayTimerDeadline >= 0) return;
+        if (delayTimer != null) delayTimer.cancel(false);
+        delayTimerDeadline = deadline;
+        delayTimer = getDelayTimerExecutor().schedule(this::completeDelayedFutures, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Runs on the timer thread: assigns the expired delayed elements to the waiting futures
+     * and arms the timer again for the next delayed element.
+     */
+    private void completeDelayedFutures() {
+        List<DequeueFuture> assignedFutures;
+        lock.lock();
+        try {
+            delayTimer = null;
+            assignedFutures = this.assignWaitingFutures();
+            if (admittedTicket != producerTicket) notFull.signalAll();
+            this.armDelayTimer();
+        } finally {
+            lock.unlock();
+        }
+        completeFutures(assignedFutures);
+    }
+
+    private static synchronized ScheduledExecutorService getDelayTimerExecutor() {
+        if (delayTimerExecutor == null) {
+            delayTimerExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "queue-service-delay");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return delayTimerExecutor;
+    }
+
+    private static void completeFutures(List<DequeueFuture> assignedFutures) {
+        if (assignedFutures == null) return;
+        for (DequeueFuture future : assignedFutures) {
+            future.complete(future.assignedItem);
+        }
+    }
+
+    /**
+     * Waits on the notEmpty condition until the queue has an element, or until the next delayed elements
+     * may expire, since nothing signals their expiration; the dequeue of the caller moves them to the queue.
+     * Must be called holding the lock.
+     * Interrupts do not stop the waiting; returns true if the thread was interrupted meanwhile.
+     *
+     * @return boolean
+     */
+    private boolean awaitNotEmpty() {
+        boolean interrupted = false;
+        long waitStart = 0;
+        while (customPriorityQueue.isEmpty()) {
+            long delayNanos = customPriorityQueue.getNextDelayNanos();
+            if (delayNanos <= 0) break;
+            if (waitStart == 0) waitStart = System.nanoTime();
+            try {
+                if (delayNanos == Long.MAX_VALUE) notEmpty.await();
+                else notEmpty.awaitNanos(delayNanos);
+            } catch (InterruptedException e) {
+                LOGGER.log(Level.SEVERE, "Interrupted while waiting for a new item to process");
+                interrupted = true;
+            }
+        }
+        if (waitStart != 0) eventListener.onConsumerWait(System.nanoTime() - waitStart);
+        return interrupted;
+    }
+
+    /**
+     * Takes the producer ticket and waits on the notFull condition until all the earlier producers
+     * were admitted and the queue has a free space. Must be called holding the lock.
+     * Interrupts do not stop the waiting; returns true if the thread was interrupted meanwhile.
+     *
+     * @return boolean
+     */
+    private boolean awaitAdmission() {
+        boolean interrupted = false;
+        long waitStart = 0;
+        long ticket = producerTicket++;
+        while (ticket != admittedTicket || !customPriorityQueue.hasFreeCapacity()) {
+            if (waitStart == 0) waitStart = System.nanoTime();
             try {
-                sleep(0);
+                notFull.await();
             } catch (InterruptedException e) {
-                LOGGER.log(Level.SEVERE, e.getMessage());
+                LOGGER.log(Level.SEVERE, "Interrupted while waiting for free space");
+                interrupted = true;
             }
         }
-        customPriorityQueue.enqueue(queueItem);
-        LOGGER.log( Level.INFO, "Equeuing item with priority {0}, and value: {1}",
-                new Object[] {queueItem.getPriority(), queueItem.getQueueItem()} );
+        admittedTicket++;
+        if (waitStart != 0) eventListener.onProducerWait(System.nanoTime() - waitStart);
+        return interrupted;
     }
 
+    /**
+     * Future of the asynchronous dequeue. Once an element is assigned to the future,
+     * it can not be cancelled, so the element is never lost between the lock release and the completion.
+     */
+    private class DequeueFuture extends CompletableFuture<QueueItem> {
+        private QueueItem assignedItem;
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            lock.lock();
+            try {
+                if (assignedItem != null) return false;
+                waitingFutures.remove(this);
+                return super.cancel(mayInterruptIfRunning);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean completeExceptionally(Throwable throwable) {
+            lock.lock();
+            try {
+                if (assignedItem != null) return false;
+                waitingFutures.remove(this);
+                return super.completeExceptionally(throwable);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
 }
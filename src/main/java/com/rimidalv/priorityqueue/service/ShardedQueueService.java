@@ -0,0 +1,309 @@
+package com.rimidalv.priorityqueue.service;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import com.rimidalv.priorityqueue.utility.ExpiredItemRemover;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queue service spread over independent {@link CustomPriorityQueue} shards, so the producers
+ * and the consumers of different shards do not contend for one lock.
+ * Items are routed to a shard by key, keeping the order of the items of the same key,
+ * or round-robin from the home shard of the producer thread.
+ * A consumer dequeues from its home shard, unless a randomly sampled shard holds an item of
+ * a higher priority, and steals from the other shards when both are empty. The priority order
+ * across the shards is therefore approximate: a consumer never skips a higher priority of its
+ * home shard, but can miss one of a shard it did not sample.
+ * Every shard applies its own scheduling policy.
+ * The count of the items is decreased by every item a shard removes, including the expired items
+ * its dequeue discards, and the {@link com.rimidalv.priorityqueue.utility.ExpiredItemReaper}
+ * of the shards reaps through the service.
+ */
+public class ShardedQueueService implements ExpiredItemRemover {
+    private static final AtomicInteger NEXT_HOME_SHARD = new AtomicInteger();
+
+    private final Shard[] shards;
+    private final ThreadLocal<ShardCursor> shardCursor;
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+
+    /**
+     * Creates the service of the specified number of shards sharing the maximum capacity evenly.
+     *
+     * @param shardCount
+     * @param maximumCapacity
+     * @param inDepthSearch
+     */
+    public ShardedQueueService(int shardCount, int maximumCapacity, boolean inDepthSearch) {
+        if (shardCount <= 0) throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        if (maximumCapacity < shardCount)
+            throw new IllegalArgumentException("Maximum capacity must be at least the shard count: " + maximumCapacity);
+
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            int shardCapacity = maximumCapacity / shardCount + (i < maximumCapacity % shardCount ? 1 : 0);
+            shards[i] = new Shard(new CustomPriorityQueue(shardCapacity, inDepthSearch), size);
+        }
+        this.shardCursor = ThreadLocal.withInitial(() -> new ShardCursor(Math.floorMod(NEXT_HOME_SHARD.getAndIncrement(), shards.length)));
+    }
+
+    /**
+     * Creates the service of the specified queues. The queues must be empty and must be
+     * accessed only through the service.
+     *
+     * @param customPriorityQueues
+     */
+    public ShardedQueueService(List<CustomPriorityQueue> customPriorityQueues) {
+        if (customPriorityQueues.isEmpty()) throw new IllegalArgumentException("Shard list must not be empty");
+
+        this.shards = new Shard[customPriorityQueues.size()];
+        for (int i = 0; i < shards.length; i++) {
+            if (!customPriorityQueues.get(i).isEmpty()) throw new IllegalArgumentException("Shard queue must be empty");
+            shards[i] = new Shard(customPriorityQueues.get(i), size);
+        }
+        this.shardCursor = ThreadLocal.withInitial(() -> new ShardCursor(Math.floorMod(NEXT_HOME_SHARD.getAndIncrement(), shards.length)));
+    }
+
+    /**
+     * Enqueues the item to the next shard of the calling thread, round-robin.
+     * If the shard is out of capacity, the following shards are tried.
+     * Returns false if all the shards are out of capacity, otherwise true.
+     *
+     * @param queueItem
+     * @return boolean
+     */
+    public boolean enqueue(QueueItem queueItem) {
+        ShardCursor cursor = shardCursor.get();
+        int first = cursor.nextShard();
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[(first + i) % shards.length].enqueue(queueItem)) {
+                this.itemAdded();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Enqueues the item to the shard of the key, so the items of the same key and priority
+     * are dequeued in the order of the enqueue.
+     * Returns false if the shard of the key is out of capacity, otherwise true.
+     *
+     * @param key
+     * @param queueItem
+     * @return boolean
+     */
+    public boolean enqueue(Object key, QueueItem queueItem) {
+        if (!shards[this.getShardIndex(key)].enqueue(queueItem)) return false;
+        this.itemAdded();
+        return true;
+    }
+
+    /**
+     * Dequeues an item without waiting. Takes the home shard of the calling thread, or the sampled
+     * shard if it holds a higher priority, and steals from the other shards when they are empty.
+     * Returns null if all the shards are empty.
+     *
+     * @return QueueItem
+     */
+    public QueueItem poll() {
+        int home = shardCursor.get().homeShard;
+        Shard preferred = shards[home];
+        if (shards.length > 1) {
+            int sampled = ThreadLocalRandom.current().nextInt(shards.length - 1);
+            Shard candidate = shards[sampled >= home ? sampled + 1 : sampled];
+            int candidatePriority = candidate.highestPriority;
+            int homePriority = preferred.highestPriority;
+            if (candidatePriority != -1 && (homePriority == -1 || candidatePriority < homePriority))
+                preferred = candidate;
+        }
+
+        QueueItem queueItem = preferred.dequeue();
+        for (int i = 1; queueItem == null && i <= shards.length; i++) {
+            queueItem = shards[(home + i) % shards.length].dequeue();
+        }
+        return queueItem;
+    }
+
+    /**
+     * Dequeues an item, waiting up to the specified time for a new item to arrive.
+     * Returns null if the time elapsed.
+     *
+     * @param timeout
+     * @param unit
+     * @return QueueItem
+     * @throws InterruptedException
+     */
+    public QueueItem dequeue(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        while (true) {
+            QueueItem queueItem = this.poll();
+            if (queueItem != null) return queueItem;
+
+            lock.lockInterruptibly();
+            waitingConsumers.incrementAndGet();
+            try {
+                while (size.get() == 0) {
+                    if (nanos <= 0) return null;
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+            } finally {
+                waitingConsumers.decrementAndGet();
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Dequeues an item, waiting for a new item to arrive if necessary.
+     *
+     * @return QueueItem
+     * @throws InterruptedException
+     */
+    public QueueItem dequeue() throws InterruptedException {
+        return this.dequeue(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Removes the expired items of all the shards, visiting at most the specified number of items
+     * of every shard. Returns the number of the removed items.
+     *
+     * @param maximumVisited
+     * @return int
+     */
+    @Override
+    public int removeExpired(int maximumVisited) {
+        int removed = 0;
+        for (Shard shard : shards) {
+            removed += shard.removeExpired(maximumVisited);
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of the items in all the shards.
+     *
+     * @return int
+     */
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns the index of the shard of the key.
+     *
+     * @param key
+     * @return int
+     */
+    public int getShardIndex(Object key) {
+        int hash = key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    /**
+     * Counts the new item and wakes up a waiting consumer, taking the lock only if one waits.
+     */
+    private void itemAdded() {
+        size.incrementAndGet();
+        if (waitingConsumers.get() == 0) return;
+
+        lock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queue of one shard with the highest priority it holds, which the consumers read
+     * without taking the lock of the queue to choose the shard. The shard subtracts every
+     * item it removes from the count of the items of the service.
+     */
+    private static class Shard {
+        private final CustomPriorityQueue customPriorityQueue;
+        private final AtomicInteger size;
+        private volatile int highestPriority = -1;
+
+        Shard(CustomPriorityQueue customPriorityQueue, AtomicInteger size) {
+            this.customPriorityQueue = customPriorityQueue;
+            this.size = size;
+        }
+
+        boolean enqueue(QueueItem queueItem) {
+            synchronized (customPriorityQueue) {
+                if (!customPriorityQueue.hasFreeCapacity()) return false;
+                customPriorityQueue.enqueue(queueItem);
+                highestPriority = customPriorityQueue.getHighestPriority();
+                return true;
+            }
+        }
+
+        QueueItem dequeue() {
+            if (highestPriority == -1) return null;
+            synchronized (customPriorityQueue) {
+                int shardSize = customPriorityQueue.size();
+                QueueItem queueItem = customPriorityQueue.dequeue();
+                this.itemsRemoved(shardSize);
+                return queueItem;
+            }
+        }
+
+        int removeExpired(int maximumVisited) {
+            synchronized (customPriorityQueue) {
+                int removed = customPriorityQueue.removeExpired(maximumVisited);
+                if (removed > 0) this.itemsRemoved(customPriorityQueue.size() + removed);
+                return removed;
+            }
+        }
+
+        /**
+         * Subtracts the items removed since the shard had the specified size, the dequeued item
+         * and the discarded expired items, and updates the highest priority.
+         * Must be called holding the lock of the queue.
+         */
+        private void itemsRemoved(int shardSize) {
+            int removed = shardSize - customPriorityQueue.size();
+            if (removed > 0) size.addAndGet(-removed);
+            Integer priority = customPriorityQueue.getHighestPriority();
+            highestPriority = priority == null ? -1 : priority;
+        }
+    }
+
+    /**
+     * Home shard and round-robin position of a thread.
+     */
+    private class ShardCursor {
+        private final int homeShard;
+        private int nextShard;
+
+        ShardCursor(int homeShard) {
+            this.homeShard = homeShard;
+            this.nextShard = homeShard;
+        }
+
+        int nextShard() {
+            int shard = nextShard;
+            nextShard = (nextShard + 1) % shards.length;
+            return shard;
+        }
+    }
+}
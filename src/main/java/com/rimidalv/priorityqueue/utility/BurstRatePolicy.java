@@ -0,0 +1,335 @@
+package com.rimidalv.priorityqueue.utility;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Scheduling policy of the burst rate. Every priority is served the burst size
+ * times in a row, then the next dequeue goes to the next available priority.
+ * Without the in depth search the original queue walked the empty priorities one by one
+ * to get there; the policy jumps to it in both modes.
+ * If there is no such priority, the in depth search serves the lowest priority again,
+ * and without it the burst starts over from the highest priority,
+ * so the policy never returns a priority without items.
+ * The visit counters cycle from 0 to the burst size and back to 0.
+ * The priorities which reached the burst size (the due priorities) are kept in a bitmap,
+ * so the due priority is found without scanning the counters. The counters of the
+ * priorities removed from the queue are kept for the next {@link #RETAINED_DRAINED_PRIORITIES}
+ * removals, so a priority which drains and comes back continues its burst, and then dropped.
+ * The state is bounded by the available priorities, not by all the priorities ever seen.
+ */
+public class BurstRatePolicy implements SchedulingPolicy {
+    public static final int DEFAULT_BURST_SIZE = 2;
+    static final int RETAINED_DRAINED_PRIORITIES = 64;
+
+    private final int burstSize;
+    private final boolean inDepthSearch;
+
+    private Map<Integer, Integer> visitedPriorities;
+    private int[] denseVisitedPriorities;
+    private final PriorityBitmap duePriorities;
+    private int dueCount;
+    private int firstDuePriority = -1;
+    private int[] drainedPriorities;
+    private int drainedHead;
+    private int drainedCount;
+
+    public BurstRatePolicy(boolean inDepthSearch) {
+        this(DEFAULT_BURST_SIZE, inDepthSearch, 0);
+    }
+
+    /**
+     * Creates the policy. If the priority range is positive, the visit counters of the
+     * priorities [0, priorityRange) are kept in an array indexed by priority and the visits
+     * of the priorities out of the range are not stored.
+     *
+     * @param burstSize
+     * @param inDepthSearch
+     * @param priorityRange
+     */
+    public BurstRatePolicy(int burstSize, boolean inDepthSearch, int priorityRange) {
+        if (burstSize < 1)
+            throw new IllegalArgumentException("Burst size must be positive: " + burstSize);
+        if (priorityRange < 0)
+            throw new IllegalArgumentException("Priority range must not be negative: " + priorityRange);
+
+        this.burstSize = burstSize;
+        this.inDepthSearch = inDepthSearch;
+        if (priorityRange == 0) {
+            this.visitedPriorities = new HashMap<>();
+        } else {
+            this.denseVisitedPriorities = new int[priorityRange];
+        }
+        this.duePriorities = new PriorityBitmap();
+        this.drainedPriorities = new int[RETAINED_DRAINED_PRIORITIES * 2];
+    }
+
+    private BurstRatePolicy(BurstRatePolicy policy) {
+        this.burstSize = policy.burstSize;
+        this.inDepthSearch = policy.inDepthSearch;
+        this.visitedPriorities = policy.visitedPriorities == null ? null : new HashMap<>(policy.visitedPriorities);
+        this.denseVisitedPriorities = policy.denseVisitedPriorities == null ? null : policy.denseVisitedPriorities.clone();
+        this.duePriorities = new PriorityBitmap(policy.duePriorities);
+        this.dueCount = policy.dueCount;
+        this.firstDuePriority = policy.firstDuePriority;
+        this.drainedPriorities = policy.drainedPriorities.clone();
+        this.drainedHead = policy.drainedHead;
+        this.drainedCount = policy.drainedCount;
+    }
+
+    /**
+     * Method gets the next dequeueing priority with respect of the burst rate.
+     * If there is no priority visited the burst size times, takes the highest priority from the queue.
+     * Drops the counters of the oldest drained priorities over the retained number,
+     * every drained priority is dropped once, so the cost does not depend on the history.
+     *
+     * @param queueView
+     * @return int
+     */
+    @Override
+    public int nextPriority(QueueView queueView) {
+        while (drainedCount > RETAINED_DRAINED_PRIORITIES) {
+            int drainedPriority = this.pollDrainedPriority();
+            if (!queueView.hasPriority(drainedPriority) && !duePriorities.get(drainedPriority))
+                this.removeVisitedPriority(drainedPriority);
+        }
+
+        int burstPriority = firstDuePriority;
+        if (burstPriority != -1) return this.getNextPriorityExecution(queueView, burstPriority);
+
+        return this.getNextPriorityExecution(queueView, queueView.getHighestPriority());
+    }
+
+    /**
+     * Method finds the priority the next dequeue goes to without updating the visit counters.
+     * The next priority resets the counter of every due priority it skips, so a priority
+     * reached again after the burst started over from the highest priority is not due any more;
+     * the walk stops there. The drained counters are not dropped, which does not change the result.
+     *
+     * @param queueView
+     * @return int
+     */
+    @Override
+    public int peekPriority(QueueView queueView) {
+        int startPriority = firstDuePriority != -1 ? firstDuePriority : queueView.getHighestPriority();
+        int priority = startPriority;
+        boolean startedOver = false;
+        while (priority != -1 && this.isBurstRate(priority)) {
+            if (startedOver && priority >= startPriority) break;
+
+            int nextPriority = queueView.getNextPriority(priority);
+            if (nextPriority == -1) {
+                if (inDepthSearch && queueView.hasPriority(priority)) break;
+                nextPriority = queueView.getHighestPriority();
+                startedOver = true;
+            }
+            priority = nextPriority;
+        }
+        return priority;
+    }
+
+    /**
+     * Method drops the visit counter of the removed priority if it was not visited in the
+     * current burst, otherwise retains it until {@link #RETAINED_DRAINED_PRIORITIES} other
+     * priorities are removed.
+     *
+     * @param priority
+     */
+    @Override
+    public void onPriorityRemoved(int priority) {
+        if (this.getVisitedPriority(priority) == 0)
+            this.removeVisitedPriority(priority);
+        else
+            this.addDrainedPriority(priority);
+    }
+
+    @Override
+    public SchedulingPolicy copy() {
+        return new BurstRatePolicy(this);
+    }
+
+    public int getBurstSize() {
+        return burstSize;
+    }
+
+    public boolean isInDepthSearch() {
+        return inDepthSearch;
+    }
+
+    /**
+     * Returns the read-only set of the visited priorities.
+     * For the policy with the priority range returns a snapshot of the visited counters.
+     * @return
+     */
+    Map<Integer, Integer> getVisitedPriorities() {
+        if (denseVisitedPriorities == null) return Collections.unmodifiableMap(this.visitedPriorities);
+
+        Map<Integer, Integer> visitedPrioritiesSnapshot = new TreeMap<>();
+        for (int priority = 0; priority < denseVisitedPriorities.length; priority++) {
+            if (denseVisitedPriorities[priority] != 0)
+                visitedPrioritiesSnapshot.put(priority, denseVisitedPriorities[priority]);
+        }
+        return visitedPrioritiesSnapshot;
+    }
+
+    /**
+     * Method finds the priority to dequeue starting from the specified one,
+     * skipping the priorities which reached the burst size, and updates the visit counters.
+     * Every skipped priority stops being due, so the number of steps is bounded
+     * by the number of the due priorities.
+     * Returns -1 if the queue is empty.
+     *
+     * @param queueView
+     * @param priority
+     * @return int
+     */
+    private int getNextPriorityExecution(QueueView queueView, int priority) {
+        while (priority != -1 && this.isBurstRate(priority)) {
+            this.incrementVisitedPriority(priority);
+            if (!queueView.hasPriority(priority)) this.removeVisitedPriority(priority);
+            priority = this.getBurstSuccessor(queueView, priority);
+        }
+        if (priority == -1) return -1;
+
+        this.incrementVisitedPriority(priority);
+        return priority;
+    }
+
+    /**
+     * Method returns the available priority the burst moves to after the specified one,
+     * which is the next available priority of the queue in both modes, so the gaps
+     * between the priorities are skipped in one step.
+     * If there is no such priority, the in depth search stays on the lowest priority of the queue,
+     * which starts a new burst there, and otherwise the burst starts over from the highest priority.
+     *
+     * @param queueView
+     * @param priority
+     * @return int
+     */
+    private int getBurstSuccessor(QueueView queueView, int priority) {
+        int nextPriority = queueView.getNextPriority(priority);
+        if (nextPriority != -1) return nextPriority;
+        return inDepthSearch && queueView.hasPriority(priority) ? priority : queueView.getHighestPriority();
+    }
+
+    /**
+     * This methods checks if the specified priority was called enough times to enable the burst rate condition.
+     *
+     * @param priority
+     * @return boolean
+     */
+    private boolean isBurstRate(int priority) {
+        return this.getVisitedPriority(priority) == burstSize;
+    }
+
+    private void incrementVisitedPriority(int priority) {
+        int timesVisited = this.getVisitedPriority(priority);
+        if (timesVisited < burstSize) {
+            this.setVisitedPriority(priority, timesVisited + 1);
+        } else {
+            this.setVisitedPriority(priority, 0);
+        }
+    }
+
+    private int getVisitedPriority(int priority) {
+        if (denseVisitedPriorities == null) {
+            Integer timesVisited = visitedPriorities.get(priority);
+            return timesVisited == null ? 0 : timesVisited;
+        }
+        return priority >= 0 && priority < denseVisitedPriorities.length ? denseVisitedPriorities[priority] : 0;
+    }
+
+    /**
+     * Methods stores how many times the priority was visited in the current burst
+     * and updates the due priorities.
+     * Visits of the priorities out of the priority range are not stored.
+     *
+     * @param priority
+     * @param timesVisited
+     */
+    void setVisitedPriority(int priority, int timesVisited) {
+        if (denseVisitedPriorities == null) {
+            visitedPriorities.put(priority, timesVisited);
+        } else if (priority >= 0 && priority < denseVisitedPriorities.length) {
+            denseVisitedPriorities[priority] = timesVisited;
+        } else {
+            return;
+        }
+
+        if (timesVisited == burstSize)
+            this.addDuePriority(priority);
+        else
+            this.removeDuePriority(priority);
+    }
+
+    private void removeVisitedPriority(int priority) {
+        if (denseVisitedPriorities == null) {
+            visitedPriorities.remove(priority);
+        } else if (priority >= 0 && priority < denseVisitedPriorities.length) {
+            denseVisitedPriorities[priority] = 0;
+        }
+        this.removeDuePriority(priority);
+    }
+
+    /**
+     * Returns the drained priorities which keep their visit counters, from the oldest to the newest.
+     *
+     * @return int[]
+     */
+    int[] getDrainedPriorities() {
+        int[] priorities = new int[drainedCount];
+        for (int i = 0; i < drainedCount; i++) {
+            priorities[i] = drainedPriorities[(drainedHead + i) % drainedPriorities.length];
+        }
+        return priorities;
+    }
+
+    /**
+     * Methods adds the priority to the ring of the drained priorities.
+     * The ring grows only if the priorities are removed faster than dequeued.
+     *
+     * @param priority
+     */
+    void addDrainedPriority(int priority) {
+        if (drainedCount == drainedPriorities.length) {
+            int[] grown = Arrays.copyOf(drainedPriorities, drainedPriorities.length * 2);
+            System.arraycopy(drainedPriorities, 0, grown, drainedPriorities.length, drainedHead);
+            drainedPriorities = grown;
+        }
+        drainedPriorities[(drainedHead + drainedCount++) % drainedPriorities.length] = priority;
+    }
+
+    private int pollDrainedPriority() {
+        int priority = drainedPriorities[drainedHead];
+        drainedHead = (drainedHead + 1) % drainedPriorities.length;
+        drainedCount--;
+        return priority;
+    }
+
+    private void addDuePriority(int priority) {
+        if (duePriorities.get(priority)) return;
+
+        duePriorities.set(priority);
+        dueCount++;
+        if (firstDuePriority == -1 || priority < firstDuePriority) firstDuePriority = priority;
+    }
+
+    /**
+     * Methods removes the priority from the due priorities. The next due priority is
+     * searched in the bitmap only if another priority is due, which does not happen
+     * in the normal dequeue order.
+     *
+     * @param priority
+     */
+    private void removeDuePriority(int priority) {
+        if (!duePriorities.get(priority)) return;
+
+        duePriorities.clear(priority);
+        dueCount--;
+        if (priority == firstDuePriority)
+            firstDuePriority = dueCount == 0 ? -1 : duePriorities.nextSetBit(priority + 1);
+    }
+}
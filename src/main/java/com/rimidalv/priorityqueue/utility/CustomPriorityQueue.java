@@ -6,22 +6,42 @@ import com.rimidalv.priorityqueue.domain.QueueNode;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.TimeUnit;
+
+public class CustomPriorityQueue implements ExpiredItemRemover {
+    static final int AGING_CHECKS_PER_DEQUEUE = 2;
+    static final long DELAY_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
 
-public class CustomPriorityQueue {
     private QueueNode<QueueItem> headerElement;
+    private QueueNode<QueueItem> tailElement;
     private Map<Integer, FirstLastPriorityItem> availablePriorities;
+    private FirstLastPriorityItem[] densePriorityItems;
+    private PriorityBitmap priorityIndex;
 
-    private static final Logger LOGGER = Logger.getLogger( CustomPriorityQueue.class.getName() );
-    private Map<Integer, Integer> visitedPriorities;
+    private SchedulingPolicy schedulingPolicy;
+    private final SchedulingPolicy.QueueView queueView = new PriorityQueueView();
+    private QueueEventListener eventListener = QueueEventListener.NO_OP;
 
     private int capacity;
     private int maximumCapacity;
-    private boolean inDepthSearch = false;
+
+    private long maximumAgeNanos;
+    private int agingCursor = -1;
+    private boolean agingChecked;
+    private Map<Integer, Long> maximumWaits;
+    private long[] denseMaximumWaits;
+
+    private TimingWheel delayedItems;
+    private final List<QueueItem> expiredDelayedItems = new ArrayList<>();
+
+    private int expiringItems;
+    private QueueNode<QueueItem> reaperCursor;
+    private boolean expirationPaused;
+    private ExpirationRecorder expirationRecorder;
+    private boolean journaled;
 
     public CustomPriorityQueue() {
+        boolean inDepthSearch = false;
         Properties properties = new Properties();
         InputStream inputStream = getClass().getClassLoader().getResourceAsStream(("application.properties"));
         if (inputStream != null) {
@@ -31,21 +51,66 @@ public class CustomPriorityQueue {
                 e.printStackTrace();
             }
             this.maximumCapacity = Integer.valueOf(properties.getProperty("maximum-queue-capacity"));
-            this.inDepthSearch = Boolean.valueOf(properties.getProperty("in-depth-search"));
+            inDepthSearch = Boolean.valueOf(properties.getProperty("in-depth-search"));
         }
         else {
             this.maximumCapacity = 11;
         }
 
-        this.availablePriorities = new ConcurrentHashMap<>(new TreeMap<>());
-        this.visitedPriorities = new ConcurrentHashMap<>(new TreeMap<>());
+        int priorityRange = Integer.valueOf(properties.getProperty("priority-range", "0"));
+        int burstSize = Integer.valueOf(properties.getProperty("burst-size", String.valueOf(BurstRatePolicy.DEFAULT_BURST_SIZE)));
+        this.initPriorityStorage(priorityRange);
+        this.schedulingPolicy = new BurstRatePolicy(burstSize, inDepthSearch, priorityRange);
     }
 
     public CustomPriorityQueue(int maximumCapacity, boolean inDepthSearch) {
+        this(maximumCapacity, inDepthSearch, 0);
+    }
+
+    /**
+     * Creates the queue for a bounded priority range. If the range is positive, the first and
+     * the last nodes and the visit counters of the priorities [0, priorityRange) are kept in arrays
+     * indexed by priority, so enqueue and dequeue do not box or hash the priority.
+     * Enqueuing a priority out of the range throws IllegalArgumentException.
+     * If the range is 0, the priorities are kept in maps and are not bounded.
+     *
+     * @param maximumCapacity
+     * @param inDepthSearch
+     * @param priorityRange
+     */
+    public CustomPriorityQueue(int maximumCapacity, boolean inDepthSearch, int priorityRange) {
+        this(maximumCapacity, priorityRange,
+                new BurstRatePolicy(BurstRatePolicy.DEFAULT_BURST_SIZE, inDepthSearch, priorityRange));
+    }
+
+    /**
+     * Creates the queue with the scheduling policy, which decides from which priority
+     * the queue dequeues next. The policy keeps its own state and must not be shared between queues.
+     *
+     * @param maximumCapacity
+     * @param priorityRange
+     * @param schedulingPolicy
+     */
+    public CustomPriorityQueue(int maximumCapacity, int priorityRange, SchedulingPolicy schedulingPolicy) {
+        if (schedulingPolicy == null) throw new NullPointerException("Scheduling policy must not be null");
         this.maximumCapacity = maximumCapacity;
-        this.inDepthSearch = inDepthSearch;
-        this.availablePriorities = new ConcurrentHashMap<>(new TreeMap<>());
-        this.visitedPriorities = new ConcurrentHashMap<>(new TreeMap<>());
+        this.initPriorityStorage(priorityRange);
+        this.schedulingPolicy = schedulingPolicy;
+    }
+
+    private void initPriorityStorage(int priorityRange) {
+        if (priorityRange < 0 || priorityRange > PriorityBitmap.MAX_PRIORITY + 1)
+            throw new IllegalArgumentException("Priority range must be in range [0, " + (PriorityBitmap.MAX_PRIORITY + 1) + "]: " + priorityRange);
+
+        this.priorityIndex = new PriorityBitmap();
+        if (priorityRange == 0) {
+            this.availablePriorities = new HashMap<>();
+        } else {
+            this.densePriorityItems = new FirstLastPriorityItem[priorityRange];
+            for (int priority = 0; priority < priorityRange; priority++) {
+                this.densePriorityItems[priority] = new FirstLastPriorityItem(null, null);
+            }
+        }
     }
 
     /**
@@ -55,43 +120,281 @@ public class CustomPriorityQueue {
      * If the queue does not contain an item with the specified priority, it will be
      * inserted in required position, otherwise will be placed at the end of the same
      * priority level.
+     * The insertion point of a new priority level is resolved by the priority index,
+     * so the cost does not depend on the number of the available priorities.
+     * Priorities must be in range [0, 16777215], or in the priority range of the queue
+     * if it was created with one.
+     * Returns the handle to cancel the item, or null if the queue is out of capacity.
+     * The node of the item is the handle, so the handle costs no allocation.
      *
      * @param newItem newItem
+     * @return QueueHandle
      */
-    public synchronized void enqueue(QueueItem newItem) {
-        if (capacity == maximumCapacity) return;
+    public synchronized QueueHandle enqueue(QueueItem newItem) {
+        this.checkPriority(newItem.getPriority());
+        if (capacity + this.getDelayedSize() >= maximumCapacity) {
+            eventListener.onReject(newItem.getPriority());
+            return null;
+        }
+        QueueHandle queueHandle;
         if (this.isEmpty()) {
-            this.addToFront(newItem);
-        } else if (availablePriorities.keySet().contains(newItem.getPriority())) {
-            this.addAfterNode(getLastNodeByPriority(newItem.getPriority()), newItem);
+            queueHandle = this.addToFront(newItem);
+        } else if (getPriorityItem(newItem.getPriority()) != null) {
+            queueHandle = this.addAfterNode(getLastNodeByPriority(newItem.getPriority()), newItem);
         } else {
-            if (headerElement.getQueueItem().getPriority() > newItem.getPriority()) {
-                this.addToFront(newItem);
+            int successorPriority = priorityIndex.nextSetBit(newItem.getPriority() + 1);
+            if (successorPriority == -1) {
+                queueHandle = this.addToEnd(newItem);
+            } else if (headerElement.getQueueItem().getPriority() == successorPriority) {
+                queueHandle = this.addToFront(newItem);
             } else {
-                QueueNode<QueueItem> insertBeforeNode = null;
-                for (Map.Entry<Integer, FirstLastPriorityItem> property : availablePriorities.entrySet()) {
-                    if (property.getKey() > newItem.getPriority()) {
-                        insertBeforeNode = property.getValue().firstNodeElement;
-                        break;
-                    }
-                }
-                if (insertBeforeNode != null) {
-                    this.addBeforeNode(insertBeforeNode, newItem);
-                } else {
-                    this.addToEnd(newItem);
-                }
+                queueHandle = this.addBeforeNode(getFirstNodeByPriority(successorPriority), newItem);
             }
         }
+        eventListener.onEnqueue(newItem.getPriority(), capacity);
+        return queueHandle;
+    }
+
+    /**
+     * Method to enqueue an item which becomes visible to the dequeue only after the delay.
+     * The delayed items wait in a timing wheel with the tick of 1 millisecond, where the insertion
+     * is O(1), and the expired items are moved to the queue together by the next dequeue or peek.
+     * The delay is rounded up to the tick, so the item is never visible early.
+     * A delayed item holds its place in the capacity of the queue while it waits.
+     * An item without a delay is enqueued at once.
+     * Returns true if the item was accepted, false if the queue is out of capacity.
+     *
+     * @param newItem
+     * @param delay
+     * @param unit
+     * @return boolean
+     */
+    public synchronized boolean enqueue(QueueItem newItem, long delay, TimeUnit unit) {
+        this.checkNotJournaled("Delayed items");
+        long delayNanos = unit.toNanos(delay);
+        if (delayNanos <= 0) return this.enqueue(newItem) != null;
+
+        this.checkPriority(newItem.getPriority());
+        if (capacity + this.getDelayedSize() >= maximumCapacity) {
+            eventListener.onReject(newItem.getPriority());
+            return false;
+        }
+        long now = System.nanoTime();
+        if (delayedItems == null) delayedItems = new TimingWheel(DELAY_TICK_NANOS, now);
+        delayedItems.add(newItem, now, delayNanos);
+        return true;
+    }
+
+    /**
+     * Method returns the number of the delayed items which are not moved to the queue yet.
+     *
+     * @return int
+     */
+    public synchronized int getDelayedSize() {
+        return delayedItems == null ? 0 : delayedItems.size();
+    }
+
+    /**
+     * Method returns the time in nanoseconds until the next delayed items may be moved to the queue,
+     * or Long.MAX_VALUE if there are no delayed items. Returns 0 if the next dequeue moves them.
+     * No enqueue signals the expiration of a delayed item, so the blocking wrappers wait
+     * for a new item no longer than this time.
+     *
+     * @return long
+     */
+    public synchronized long getNextDelayNanos() {
+        return delayedItems == null ? Long.MAX_VALUE : delayedItems.nextEventDelay(System.nanoTime());
+    }
+
+    /**
+     * Methods adds the delayed items which are not moved to the queue yet and their remaining
+     * delays in nanoseconds to the lists. Used to take a snapshot of the queue.
+     *
+     * @param queueItems
+     * @param delays
+     */
+    synchronized void copyDelayedItems(List<QueueItem> queueItems, List<Long> delays) {
+        if (delayedItems != null) delayedItems.copyTimers(System.nanoTime(), queueItems, delays);
+    }
+
+    /**
+     * Methods moves the expired delayed items to the queue, grouped by priority.
+     * The items are collected to a list of the queue, so a dequeue which moves nothing allocates nothing.
+     */
+    private void moveExpiredItems() {
+        if (delayedItems == null || delayedItems.size() == 0) return;
+        if (delayedItems.advance(System.nanoTime(), expiredDelayedItems) == 0) return;
+        try {
+            this.enqueueAll(expiredDelayedItems);
+        } finally {
+            expiredDelayedItems.clear();
+        }
+    }
+
+    /**
+     * Sets the listener of the queue events. The default listener does nothing.
+     *
+     * @param eventListener
+     */
+    public synchronized void setQueueEventListener(QueueEventListener eventListener) {
+        this.eventListener = eventListener == null ? QueueEventListener.NO_OP : eventListener;
+    }
+
+    /**
+     * Replaces the scheduling policy of the queue. The priorities available in the queue
+     * are reported to the new policy as added.
+     *
+     * @param schedulingPolicy
+     */
+    public synchronized void setSchedulingPolicy(SchedulingPolicy schedulingPolicy) {
+        if (schedulingPolicy == null) throw new NullPointerException("Scheduling policy must not be null");
+        for (int priority = priorityIndex.nextSetBit(0); priority != -1; priority = priorityIndex.nextSetBit(priority + 1)) {
+            schedulingPolicy.onPriorityAdded(priority);
+        }
+        this.schedulingPolicy = schedulingPolicy;
+    }
+
+    /**
+     * Method returns the scheduling policy of the queue.
+     *
+     * @return SchedulingPolicy
+     */
+    public synchronized SchedulingPolicy getSchedulingPolicy() {
+        return schedulingPolicy;
+    }
+
+    /**
+     * Enables the aging of the items, or disables it if the maximum age is 0.
+     * Every dequeue checks the first items of the next two priorities in rotation, and moves
+     * an item waiting longer than the maximum age to the end of the next higher priority
+     * of the queue. The item moves up again after every further maximum age, so it waits
+     * about the maximum age per higher priority of the queue at most, plus the dequeues
+     * until its priority is checked. A moved item is dequeued with the priority it was moved to.
+     * Only the items enqueued after the aging was enabled have the enqueue time and age.
+     *
+     * @param maximumAge
+     * @param unit
+     */
+    public synchronized void setAging(long maximumAge, TimeUnit unit) {
+        if (maximumAge < 0) throw new IllegalArgumentException("Maximum age must not be negative: " + maximumAge);
+        if (maximumAge > 0) this.checkNotJournaled("Aging");
+        this.maximumAgeNanos = unit.toNanos(maximumAge);
+        if (maximumAgeNanos > 0 && maximumWaits == null && denseMaximumWaits == null) {
+            if (densePriorityItems == null)
+                maximumWaits = new HashMap<>();
+            else
+                denseMaximumWaits = new long[densePriorityItems.length];
+        }
+    }
+
+    /**
+     * Method returns the longest time an aging item enqueued with the specified priority
+     * waited in the queue until it was dequeued, in nanoseconds.
+     * Returns 0 if no such item was dequeued.
+     *
+     * @param priority
+     * @return long
+     */
+    public synchronized long getMaximumWaitNanos(int priority) {
+        if (denseMaximumWaits != null)
+            return priority >= 0 && priority < denseMaximumWaits.length ? denseMaximumWaits[priority] : 0;
+        if (maximumWaits == null) return 0;
+        return maximumWaits.getOrDefault(priority, 0L);
+    }
+
+    /**
+     * Method to enqueue a batch of items under a single lock acquisition.
+     * Items are accepted in the iteration order of the collection while the queue has
+     * a free space. The priorities of the whole batch are checked before any item is linked,
+     * so a batch with an invalid priority leaves the queue unchanged. Accepted items are grouped by priority, keeping their order, and
+     * every group is linked into the queue as one sublist after the last node of its priority.
+     * Returns the number of the accepted items.
+     *
+     * @param newItems
+     * @return int
+     */
+    public synchronized int enqueueAll(Collection<? extends QueueItem> newItems) {
+        for (QueueItem newItem : newItems) {
+            this.checkPriority(newItem.getPriority());
+        }
+        int accepted = Math.max(0, Math.min(newItems.size(), maximumCapacity - capacity - this.getDelayedSize()));
+
+        TreeMap<Integer, FirstLastPriorityItem> runs = new TreeMap<>();
+        Iterator<? extends QueueItem> iterator = newItems.iterator();
+        for (int i = 0; i < accepted; i++) {
+            QueueItem newItem = iterator.next();
+            FirstLastPriorityItem run = runs.get(newItem.getPriority());
+            if (run == null) {
+                QueueNode<QueueItem> newNode = this.newNode(newItem, null, null);
+                runs.put(newItem.getPriority(), new FirstLastPriorityItem(newNode, newNode));
+            } else {
+                QueueNode<QueueItem> newNode = this.newNode(newItem, run.lastNodeElement, null);
+                run.lastNodeElement.setNextItem(newNode);
+                run.lastNodeElement = newNode;
+            }
+        }
+
+        while (iterator.hasNext()) {
+            eventListener.onReject(iterator.next().getPriority());
+        }
+
+        for (Map.Entry<Integer, FirstLastPriorityItem> run : runs.entrySet()) {
+            this.spliceRun(run.getKey(), run.getValue());
+            for (QueueNode<QueueItem> node = run.getValue().firstNodeElement; ; node = node.getNextItem()) {
+                eventListener.onEnqueue(run.getKey(), ++capacity);
+                if (node == run.getValue().lastNodeElement) break;
+            }
+        }
+
+        return accepted;
+    }
+
+    /**
+     * Methods links the items of one priority, in their order, into the queue without
+     * the per item lookups of the enqueue and without the queue events. Used to restore
+     * a snapshot, where the items come grouped by priority from the highest to the lowest,
+     * so every run is linked at the end of the queue.
+     * Throws IllegalStateException if the items do not fit the maximum capacity.
+     *
+     * @param priority
+     * @param queueItems
+     */
+    synchronized void appendPriorityRun(int priority, List<QueueItem> queueItems) {
+        if (queueItems.isEmpty()) return;
+        this.checkPriority(priority);
+        if (queueItems.size() > maximumCapacity - capacity)
+            throw new IllegalStateException("Items do not fit the maximum capacity of the queue: " + maximumCapacity);
+
+        QueueNode<QueueItem> firstNode = this.newNode(queueItems.get(0), null, null);
+        QueueNode<QueueItem> lastNode = firstNode;
+        for (int i = 1; i < queueItems.size(); i++) {
+            QueueNode<QueueItem> newNode = this.newNode(queueItems.get(i), lastNode, null);
+            lastNode.setNextItem(newNode);
+            lastNode = newNode;
+        }
+        this.spliceRun(priority, new FirstLastPriorityItem(firstNode, lastNode));
+        capacity += queueItems.size();
     }
 
     /**
-     * Recursive method to trigger the burst approach. Called by dequeue method.
-     * This method must be synchronized as it is recursively executed.
-     * Returns dequeued queue item if exists, otherwise null.
+     * Method to dequeue the first item of the priority chosen by the scheduling policy.
+     * The expired delayed items are moved to the queue first,
+     * and if the aging is enabled, the aged items are promoted.
+     * The expired items at the front of the priorities are discarded while the policy looks
+     * at the priorities, so they are not counted by the policy. If the policy does not look
+     * at the priorities, e.g. the deficit round robin, the expired items of the chosen priority
+     * are discarded after the choice and the next live item of the priority is dequeued.
+     * Returns dequeued queue item, or null if the queue is empty or the policy
+     * chose a priority without items, which the bundled policies never do.
      *
      */
     public synchronized QueueItem dequeue() {
-        int priority = getNextPriority();
+        this.moveExpiredItems();
+        if (maximumAgeNanos > 0 && !agingChecked) this.promoteAgedItems();
+        agingChecked = false;
+        int priority = schedulingPolicy.nextPriority(queueView);
+        while (expiringItems > 0 && this.getFirstNodeByPriority(priority) != null && !this.removeExpiredHeads(priority))
+            priority = schedulingPolicy.nextPriority(queueView);
 
         QueueNode<QueueItem> firstPriorityNode =
                 this.getFirstNodeByPriority(priority);
@@ -99,24 +402,48 @@ public class CustomPriorityQueue {
         if (firstPriorityNode == null) return null;
 
         QueueItem queueItem = firstPriorityNode.getQueueItem();
-        LOGGER.log( Level.INFO, "Dequeuing item for priority {0}, item: {1}",
-                new Object[] {priority, queueItem.getQueueItem()} );
-
         this.dequeue(firstPriorityNode);
+        if (firstPriorityNode instanceof AgingNode) this.recordWait((AgingNode) firstPriorityNode);
+        eventListener.onDequeue(priority, capacity);
 
         return queueItem;
     }
 
+    /**
+     * Method to dequeue up to the specified number of items under a single lock acquisition
+     * and add them to the collection. The items and the visited priorities are the same
+     * as after the same number of consecutive dequeue calls.
+     * Returns the number of the transferred items.
+     *
+     * @param collection
+     * @param maxElements
+     * @return int
+     */
+    public synchronized int drainTo(Collection<? super QueueItem> collection, int maxElements) {
+        this.moveExpiredItems();
+        int drained = 0;
+        while (drained < maxElements && !this.isEmpty()) {
+            QueueItem queueItem = this.dequeue();
+            if (queueItem != null) {
+                collection.add(queueItem);
+                drained++;
+            }
+        }
+        return drained;
+    }
+
     /**
      * Method to dequeue a specified node.
      * Removed an element from the queue and changes the link of the previous
      * and next elements in the queue to refer to each other.
      * Updates the priorities list to have the new references of the nodes.
+     * The links of the removed node are cleared, so a node which is not in the queue
+     * any more is ignored.
      *
      * @param removeNode
      */
     public synchronized void dequeue(QueueNode<QueueItem> removeNode) {
-        if (this.isEmpty() || removeNode == null) return;
+        if (!this.isQueued(removeNode)) return;
 
         if (headerElement.equals(removeNode)) {
             if (headerElement.getNextItem() != null) {
@@ -124,256 +451,492 @@ public class CustomPriorityQueue {
                 headerElement.setPreviousItem(null);
             } else {
                 headerElement = null;
+                tailElement = null;
             }
-            this.updateAvailablePrioritiesForRemoveMethod(removeNode);
-            capacity--;
-            return;
+        } else {
+            if (removeNode.getNextItem() != null)
+                removeNode.getNextItem().setPreviousItem(removeNode.getPreviousItem());
+            else
+                tailElement = removeNode.getPreviousItem();
+            removeNode.getPreviousItem().setNextItem(removeNode.getNextItem());
         }
 
-        if (removeNode.getNextItem() != null)
-            removeNode.getNextItem().setPreviousItem(removeNode.getPreviousItem());
-        removeNode.getPreviousItem().setNextItem(removeNode.getNextItem());
-
         this.updateAvailablePrioritiesForRemoveMethod(removeNode);
+        removeNode.setPreviousItem(null);
+        removeNode.setNextItem(null);
         capacity--;
+        if (removeNode.getQueueItem().isExpiring()) expiringItems--;
     }
 
     /**
-     * Method checks if the queue has a free space to put a new element.
-     * If the queue is out of space returns false, otherwise true.
+     * Methods checks if the node is linked in the queue: it is the header node
+     * or has a previous node. Removed nodes have no links.
      *
+     * @param node
      * @return boolean
      */
-    public synchronized boolean hasFreeCapacity() {
-        return maximumCapacity > capacity;
+    synchronized boolean isQueued(QueueNode<QueueItem> node) {
+        return node != null && !this.isEmpty() && (node == headerElement || node.getPreviousItem() != null);
     }
 
     /**
-     * Methods checks if the queue contains an element.
-     * returns false if the queue contains element.
+     * Method moves the item of the handle to the end of the items of the new priority,
+     * without walking the list: the node is unlinked from its priority and linked after the
+     * last node of the new priority, or in front of the first node of the next priority.
+     * The node gets a new queue item of the new priority with the same value, so the enqueued
+     * queue item is not changed.
+     * Returns false if the item is not in the queue any more, otherwise true.
      *
+     * @param queueHandle
+     * @param newPriority
      * @return boolean
      */
-    public synchronized boolean isEmpty() {
-        return capacity == 0;
+    public synchronized boolean changePriority(QueueHandle queueHandle, int newPriority) {
+        if (!(queueHandle instanceof HandleNode) || ((HandleNode) queueHandle).getQueue() != this)
+            throw new IllegalArgumentException("Handle does not belong to the queue");
+        this.checkPriority(newPriority);
+        this.checkNotJournaled("Priority changes");
+
+        HandleNode node = (HandleNode) queueHandle;
+        if (!this.isQueued(node)) return false;
+        QueueItem queueItem = node.getQueueItem();
+        if (queueItem.getPriority() == newPriority) return true;
+
+        this.moveNode(node, newPriority);
+        return true;
     }
 
     /**
-     * Methods returns the highest priority in the queue.
-     * If the queue does not have an element in the queue returns null,
-     * otherwise the highest priority in the queue.
+     * Methods moves the queued node to the end of the items of the new priority.
+     * The node gets a new queue item of the new priority with the same value.
      *
-     * @return Integer
+     * @param node
+     * @param newPriority
      */
-    public synchronized Integer getHighestPriority() {
-        if (this.isEmpty()) return null;
-        return headerElement.getQueueItem().getPriority();
+    private void moveNode(QueueNode<QueueItem> node, int newPriority) {
+        QueueItem queueItem = node.getQueueItem();
+        this.dequeue(node);
+        node.setQueueItem(new QueueItem<>(newPriority, queueItem.getQueueItem(), queueItem.getExpirationTime()));
+        this.spliceRun(newPriority, new FirstLastPriorityItem(node, node));
+        capacity++;
+        if (queueItem.isExpiring()) expiringItems++;
     }
 
     /**
-     * Methods returns the first node of the specified priority.
-     * If the queue does not have the element of the specified priority
-     * returns null.
+     * Method removes the expired items of the queue, visiting at most the specified number of
+     * the items from where the previous call stopped and going on from the front of the queue
+     * at its end. Walking the queue in parts keeps every lock hold short, so a background
+     * reaper can free the space of the expired items which are not at the front of their priorities.
+     * Returns the number of the removed items.
      *
-     * @param priority
-     * @return
+     * @param maximumVisited
+     * @return int
      */
-    public synchronized QueueNode<QueueItem> getFirstNodeByPriority(int priority) {
-        if (availablePriorities.containsKey(priority)) {
-            return availablePriorities.get(priority).firstNodeElement;
-        } else {
-            return null;
+    @Override
+    public synchronized int removeExpired(int maximumVisited) {
+        if (expiringItems == 0) {
+            reaperCursor = null;
+            return 0;
+        }
+        long now = this.currentTimeMillis();
+        QueueNode<QueueItem> node = this.isQueued(reaperCursor) ? reaperCursor : headerElement;
+        int removed = 0;
+        int visits = Math.min(maximumVisited, capacity);
+        for (int visited = 0; node != null && visited < visits; visited++) {
+            QueueNode<QueueItem> nextNode = node.getNextItem() != null ? node.getNextItem() : headerElement;
+            if (node.getQueueItem().isExpired(now)) {
+                this.discardExpired(node);
+                removed++;
+            }
+            node = this.isQueued(nextNode) ? nextNode : headerElement;
         }
+        reaperCursor = node;
+        return removed;
     }
 
     /**
-     * Method gets the next dequeueing priority with respect of the burst rate.
-     * If there is no priority visited twice, takes the highest priority from the queue.
-     * If there is an element in the queue ready to be processed, return its priority,
-     * Otherwise -1.
+     * Methods discards the expired items from the front of the priority.
+     * Returns true if the priority still has items.
      *
-     * @return
+     * @param priority
+     * @return boolean
      */
-    private synchronized int getNextPriority() {
-        int visitedTwiceElement = this.hasElementVisitedTwice();
-        if (visitedTwiceElement != -1) {
-            return this.getNextPriorityExecution(visitedTwiceElement);
-        } else {
-            Integer highestPriority = this.getHighestPriority();
-            if (highestPriority == null) return -1;
+    private boolean removeExpiredHeads(int priority) {
+        QueueNode<QueueItem> node = this.getFirstNodeByPriority(priority);
+        long now = 0;
+        while (node != null && node.getQueueItem().isExpiring()) {
+            if (now == 0) now = this.currentTimeMillis();
+            if (!node.getQueueItem().isExpired(now)) break;
+            this.discardExpired(node);
+            node = this.getFirstNodeByPriority(priority);
+        }
+        return node != null;
+    }
 
-            return this.getNextPriorityExecution(highestPriority);
+    private void discardExpired(QueueNode<QueueItem> node) {
+        int priority = node.getQueueItem().getPriority();
+        if (expirationRecorder != null) expirationRecorder.onExpire(priority, this.indexInPriority(node));
+        this.dequeue(node);
+        eventListener.onExpire(priority, capacity);
+    }
+
+    /**
+     * Methods returns the position of the node among the nodes of its priority, counting from 0.
+     *
+     * @param node
+     * @return int
+     */
+    private int indexInPriority(QueueNode<QueueItem> node) {
+        int index = 0;
+        for (QueueNode<QueueItem> priorityNode = this.getFirstNodeByPriority(node.getQueueItem().getPriority());
+             priorityNode != node; priorityNode = priorityNode.getNextItem()) {
+            index++;
         }
+        return index;
     }
+
     /**
-     * This methods checks if the specified priority was called enough times to enable the burst rate condition.
+     * Methods returns the time the expiration of the items is checked against. While the expiration
+     * is paused no item is expired, so the journal replay discards only the journaled items.
      *
-     * @param priority
-     * @return
+     * @return long
      */
-    private synchronized boolean isBurstRate(int priority) {
-        if (!this.visitedPriorities.containsKey(priority)) return false;
+    private long currentTimeMillis() {
+        return expirationPaused ? Long.MIN_VALUE : System.currentTimeMillis();
+    }
 
-        return this.visitedPriorities.get(priority) == 2;
+    /**
+     * Pauses or resumes the expiration of the items. Used by the {@link DurablePriorityQueue}
+     * while it replays the journal.
+     *
+     * @param expirationPaused
+     */
+    synchronized void setExpirationPaused(boolean expirationPaused) {
+        this.expirationPaused = expirationPaused;
     }
 
     /**
-     * Method recursively finds the lowest priority in the visited list,
-     * updates the visited counter, and returns its value.
+     * Sets the recorder of the discarded expired items, or null to remove it.
+     * Used by the {@link DurablePriorityQueue} to journal the discards.
      *
-     * @param priority
-     * @return
+     * @param expirationRecorder
      */
-    private synchronized int getNextPriorityExecution(int priority) {
-        if (this.isBurstRate(priority)) {
-            this.incrementVisitedPriority(priority);
-            if (!this.inDepthSearch) {
-                priority = priority + 1;
-                return this.getNextPriorityExecution(priority);
-            } else {
-                int nextPriority = this.getNextQueuePriority(priority);
-                if (nextPriority > 0)
-                    priority = nextPriority;
-                return this.getNextPriorityExecution(priority);
-            }
-        } else {
-            this.incrementVisitedPriority(priority);
-            return priority;
-        }
+    synchronized void setExpirationRecorder(ExpirationRecorder expirationRecorder) {
+        this.expirationRecorder = expirationRecorder;
     }
 
     /**
-     * Methods returns the next highest available priority in the queue.
-     * If the specified priority is the lowest in the queue or the queue
-     * is empty - returns null.
+     * Marks the queue as wrapped by the {@link DurablePriorityQueue}. The journal replays only the enqueues,
+     * the dequeues and the discards of the expired items, so while the queue is journaled, the aging,
+     * the delayed items and the priority changes throw IllegalStateException.
      *
-     * @param priority
-     * @return QueueNode<QueueItem>
+     * @param journaled
      */
-    synchronized int getNextQueuePriority(int priority) {
-        if (this.isEmpty()) return -1;
+    synchronized void setJournaled(boolean journaled) {
+        this.journaled = journaled;
+    }
 
-        if (headerElement.getQueueItem().getPriority() > priority) {
-            return headerElement.getQueueItem().getPriority();
-        } else {
-            if (availablePriorities.containsKey(priority + 1)) {
-                return priority + 1;
-            } else {
-                for (int availablePriority: availablePriorities.keySet()) {
-                    if (priority < availablePriority) {
-                        return availablePriority;
-                    }
-                }
-            }
+    /**
+     * Method returns true if the aging of the items is enabled.
+     *
+     * @return boolean
+     */
+    synchronized boolean isAging() {
+        return maximumAgeNanos > 0;
+    }
+
+    private void checkNotJournaled(String operation) {
+        if (journaled) throw new IllegalStateException(operation + " of a journaled queue can not be replayed");
+    }
+
+    /**
+     * Methods checks the first items of the next priorities in rotation and moves the items
+     * older than the maximum age, multiplied by one more than the number of their previous moves,
+     * to the end of the next higher priority of the queue.
+     */
+    private void promoteAgedItems() {
+        long now = System.nanoTime();
+        for (int check = 0; check < AGING_CHECKS_PER_DEQUEUE; check++) {
+            int priority = priorityIndex.nextSetBit(agingCursor + 1);
+            if (priority == -1) priority = priorityIndex.nextSetBit(0);
+            if (priority == -1) return;
+            agingCursor = priority;
+
+            int higherPriority = priorityIndex.previousSetBit(priority - 1);
+            QueueNode<QueueItem> firstPriorityNode = this.getFirstNodeByPriority(priority);
+            if (higherPriority == -1 || !(firstPriorityNode instanceof AgingNode)) continue;
+
+            AgingNode node = (AgingNode) firstPriorityNode;
+            if (now - node.enqueueTime <= maximumAgeNanos * (node.promotions + 1)) continue;
+            node.promotions++;
+            this.moveNode(node, higherPriority);
+            eventListener.onPromote(priority, higherPriority);
         }
+    }
 
-        return -1;
+    private void recordWait(AgingNode node) {
+        long wait = System.nanoTime() - node.enqueueTime;
+        if (denseMaximumWaits != null) {
+            if (wait > denseMaximumWaits[node.enqueuedPriority]) denseMaximumWaits[node.enqueuedPriority] = wait;
+        } else if (maximumWaits != null) {
+            maximumWaits.merge(node.enqueuedPriority, wait, Math::max);
+        }
     }
 
     /**
-     * Returns the set of the visited priorities.
-     * @return
+     * Methods creates the node of the queue: with the enqueue time if the aging is enabled.
+     * Counts the items with the expiration time, so the queue without them does not check the expiration.
+     *
+     * @param queueItem
+     * @param previousItem
+     * @param nextItem
+     * @return HandleNode
      */
-    Map<Integer, Integer> getVisitedPrioritesList() {
-        return this.visitedPriorities;
+    private HandleNode newNode(QueueItem queueItem, QueueNode<QueueItem> previousItem, QueueNode<QueueItem> nextItem) {
+        if (queueItem.isExpiring()) expiringItems++;
+        if (maximumAgeNanos == 0) return new HandleNode(queueItem, previousItem, nextItem);
+        return new AgingNode(queueItem, previousItem, nextItem, System.nanoTime());
     }
 
     /**
-     * This methods stores information about visited priorities of the queue.
-     * Used to enable burst rate
+     * Method returns the item which the next dequeue call would return, without removing it
+     * and without changing the state of the scheduling policy.
+     * If the aging is enabled, the aged items are promoted first, the same as in the dequeue,
+     * and the next dequeue does not check the aging again, so it returns the peeked item.
+     * Returns null if the queue is empty.
      *
-     * @param priority
+     * @return QueueItem
      */
-    private synchronized void incrementVisitedPriority(int priority) {
-        if (this.visitedPriorities.containsKey(priority)) {
-            int timesVisited = this.visitedPriorities.get(priority);
-            if (timesVisited < 2) {
-                this.visitedPriorities.put(priority, timesVisited + 1);
-            } else {
-                this.visitedPriorities.put(priority, 0);
+    public synchronized QueueItem peek() {
+        this.moveExpiredItems();
+        if (maximumAgeNanos > 0 && !agingChecked) {
+            this.promoteAgedItems();
+            agingChecked = true;
+        }
+        if (this.isEmpty()) return null;
+
+        int priority = schedulingPolicy.peekPriority(queueView);
+        while (expiringItems > 0 && this.getFirstNodeByPriority(priority) != null && !this.removeExpiredHeads(priority))
+            priority = schedulingPolicy.peekPriority(queueView);
+
+        QueueNode<QueueItem> firstPriorityNode = this.getFirstNodeByPriority(priority);
+        return firstPriorityNode == null ? null : firstPriorityNode.getQueueItem();
+    }
+
+    /**
+     * Method removes the first occurrence of the specified item from the queue.
+     * Only the nodes of the item priority are visited.
+     * Returns true if the item was removed, otherwise false.
+     *
+     * @param queueItem
+     * @return boolean
+     */
+    public synchronized boolean remove(QueueItem queueItem) {
+        if (queueItem == null) return false;
+
+        QueueNode<QueueItem> node = this.getFirstNodeByPriority(queueItem.getPriority());
+        QueueNode<QueueItem> lastNode = this.getLastNodeByPriority(queueItem.getPriority());
+        while (node != null) {
+            if (queueItem.equals(node.getQueueItem())) {
+                this.dequeue(node);
+                return true;
             }
-        } else {
-            this.visitedPriorities.put(priority, 1);
+            if (node == lastNode) break;
+            node = node.getNextItem();
         }
+        return false;
     }
+
     /**
-     * Method checks if the visited priorities map contains a priority visited twice.
-     * If finds the value, returns the key of priority, otherwise -1
+     * Method returns the items of the queue in the list order,
+     * from the highest priority to the lowest.
      *
-     * @return
+     * @return List<QueueItem>
      */
-    private synchronized int hasElementVisitedTwice() {
-        for (Map.Entry<Integer, Integer> prioritySet : this.visitedPriorities.entrySet()) {
-            if (prioritySet.getValue() == 2)
-                return prioritySet.getKey();
+    public synchronized List<QueueItem> toList() {
+        List<QueueItem> queueItems = new ArrayList<>(capacity);
+        for (QueueNode<QueueItem> node = headerElement; node != null; node = node.getNextItem()) {
+            queueItems.add(node.getQueueItem());
         }
-        return -1;
+        return queueItems;
+    }
+
+    /**
+     * Method returns the number of the elements in the queue, without the delayed items.
+     *
+     * @return int
+     */
+    @Override
+    public synchronized int size() {
+        return capacity;
+    }
+
+    /**
+     * Method returns the maximum number of the elements the queue can hold.
+     *
+     * @return int
+     */
+    public synchronized int getMaximumCapacity() {
+        return maximumCapacity;
+    }
+
+    /**
+     * Method returns the priority range of the queue, or 0 if the priorities are not bounded.
+     *
+     * @return int
+     */
+    int getPriorityRange() {
+        return densePriorityItems == null ? 0 : densePriorityItems.length;
     }
 
+    /**
+     * Method checks if the queue has a free space to put a new element.
+     * The delayed items take the space too.
+     * If the queue is out of space returns false, otherwise true.
+     *
+     * @return boolean
+     */
+    public synchronized boolean hasFreeCapacity() {
+        return maximumCapacity > capacity + this.getDelayedSize();
+    }
+
+    /**
+     * Methods checks if the queue contains an element.
+     * returns false if the queue contains element.
+     *
+     * @return boolean
+     */
+    public synchronized boolean isEmpty() {
+        return capacity == 0;
+    }
+
+    /**
+     * Methods returns the highest priority in the queue.
+     * If the queue does not have an element in the queue returns null,
+     * otherwise the highest priority in the queue.
+     *
+     * @return Integer
+     */
+    public synchronized Integer getHighestPriority() {
+        if (this.isEmpty()) return null;
+        return headerElement.getQueueItem().getPriority();
+    }
+
+    /**
+     * Methods returns the first node of the specified priority.
+     * If the queue does not have the element of the specified priority
+     * returns null.
+     *
+     * @param priority
+     * @return
+     */
+    public synchronized QueueNode<QueueItem> getFirstNodeByPriority(int priority) {
+        FirstLastPriorityItem firstLastPriorityItem = getPriorityItem(priority);
+        return firstLastPriorityItem == null ? null : firstLastPriorityItem.firstNodeElement;
+    }
+
+    /**
+     * Methods returns the next highest available priority in the queue.
+     * If the specified priority is the lowest in the queue or the queue
+     * is empty - returns -1.
+     *
+     * @param priority
+     * @return QueueNode<QueueItem>
+     */
+    synchronized int getNextQueuePriority(int priority) {
+        if (this.isEmpty() || priority >= PriorityBitmap.MAX_PRIORITY) return -1;
+
+        return priorityIndex.nextSetBit(priority + 1);
+    }
+
+    /**
+     * Returns the set of the visited priorities of the burst rate policy,
+     * or an empty map for the other policies.
+     * @return
+     */
+    Map<Integer, Integer> getVisitedPrioritesList() {
+        if (schedulingPolicy instanceof BurstRatePolicy)
+            return ((BurstRatePolicy) schedulingPolicy).getVisitedPriorities();
+        return Collections.emptyMap();
+    }
 
     /**
      * Methods adds the element to the beginning of the queue and updates the
      * available list to the inserted node.
      *
+     * Returns the handle of the new node.
+     *
      * @param newItem
+     * @return QueueHandle
      */
-    void addToFront(QueueItem newItem) {
-        if (this.isEmpty())
-            headerElement = new QueueNode<>(newItem);
-        else {
+    QueueHandle addToFront(QueueItem newItem) {
+        HandleNode newNode;
+        if (this.isEmpty()) {
+            newNode = this.newNode(newItem, null, null);
+            headerElement = newNode;
+            tailElement = headerElement;
+        } else {
             QueueNode<QueueItem> temp = headerElement;
-            headerElement = new QueueNode<>(newItem, null, temp);
+            newNode = this.newNode(newItem, null, temp);
+            headerElement = newNode;
             headerElement.getNextItem().setPreviousItem(headerElement);
         }
 
-        if (availablePriorities.containsKey(newItem.getPriority())) {
-            availablePriorities.get(newItem.getPriority()).firstNodeElement = headerElement;
+        FirstLastPriorityItem firstLastPriorityItem = getPriorityItem(newItem.getPriority());
+        if (firstLastPriorityItem != null) {
+            firstLastPriorityItem.firstNodeElement = headerElement;
         } else {
-            availablePriorities.put(newItem.getPriority(), new FirstLastPriorityItem(headerElement, headerElement));
+            this.addPriorityItem(newItem.getPriority(), headerElement, headerElement);
         }
 
         capacity++;
+        return newNode;
     }
 
     /**
      * Methods adds the element to the end of the queue and updates the
-     * available list to the inserted node.
+     * available list to the inserted node. Uses the tail reference, so the
+     * cost does not depend on the queue depth.
+     * Returns the handle of the new node.
      *
      * @param newItem
+     * @return QueueHandle
      */
-    void addToEnd(QueueItem newItem) {
-        QueueNode<QueueItem> temp = null;
-        if (this.isEmpty())
-            headerElement = new QueueNode<>(newItem);
-        else {
-            temp = headerElement;
-            while (temp.getNextItem() != null) {
-                temp = temp.getNextItem();
-            }
-            temp.setNextItem(new QueueNode<>(newItem, temp, null));
+    QueueHandle addToEnd(QueueItem newItem) {
+        HandleNode lastElement;
+        if (this.isEmpty()) {
+            lastElement = this.newNode(newItem, null, null);
+            headerElement = lastElement;
+        } else {
+            lastElement = this.newNode(newItem, tailElement, null);
+            tailElement.setNextItem(lastElement);
         }
+        tailElement = lastElement;
 
-        QueueNode<QueueItem> lastElement = (temp == null) ? headerElement : temp.getNextItem();
-        if (availablePriorities.containsKey(newItem.getPriority())) {
-            availablePriorities.get(newItem.getPriority()).lastNodeElement = lastElement;
+        FirstLastPriorityItem firstLastPriorityItem = getPriorityItem(newItem.getPriority());
+        if (firstLastPriorityItem != null) {
+            firstLastPriorityItem.lastNodeElement = lastElement;
         } else {
-            availablePriorities.put(newItem.getPriority(), new FirstLastPriorityItem(lastElement, lastElement));
+            this.addPriorityItem(newItem.getPriority(), lastElement, lastElement);
         }
         capacity++;
-
+        return lastElement;
     }
 
     /**
      * Methods adds the element in front of the specified node and updates the
      * available list to the inserted node. Takes a node and a queue item as parameters.
      *
+     * Returns the handle of the new node, or null if the item was not added.
+     *
      * @param addBeforeNode
      * @param newItem
+     * @return QueueHandle
      */
-    void addBeforeNode(QueueNode<QueueItem> addBeforeNode, QueueItem newItem) {
-        if (this.isEmpty() || addBeforeNode == null || newItem == null || availablePriorities.containsKey(newItem.getPriority())) return;
+    QueueHandle addBeforeNode(QueueNode<QueueItem> addBeforeNode, QueueItem newItem) {
+        if (this.isEmpty() || addBeforeNode == null || newItem == null || getPriorityItem(newItem.getPriority()) != null) return null;
 
-        QueueNode<QueueItem> newNode = new QueueNode<>(newItem, addBeforeNode.getPreviousItem(), addBeforeNode);
+        HandleNode newNode = this.newNode(newItem, addBeforeNode.getPreviousItem(), addBeforeNode);
         if (addBeforeNode.getPreviousItem() != null) {
             newNode.setPreviousItem(addBeforeNode.getPreviousItem());
             newNode.getPreviousItem().setNextItem(newNode);
@@ -383,45 +946,92 @@ public class CustomPriorityQueue {
 
         addBeforeNode.setPreviousItem(newNode);
 
-        availablePriorities.put(newItem.getPriority(), new FirstLastPriorityItem(newNode, newNode));
+        this.addPriorityItem(newItem.getPriority(), newNode, newNode);
         capacity++;
+        return newNode;
     }
 
     /**
      * Methods adds the element after the specified node and updates the
      * available list to the inserted node. Takes a node and a queue item as parameters.
      *
+     * Returns the handle of the new node, or null if the item was not added.
+     *
      * @param addAfterNode
      * @param newItem
+     * @return QueueHandle
      */
-    void addAfterNode(QueueNode<QueueItem> addAfterNode, QueueItem newItem) {
-        if (this.isEmpty() || addAfterNode == null || newItem == null) return;
+    QueueHandle addAfterNode(QueueNode<QueueItem> addAfterNode, QueueItem newItem) {
+        if (this.isEmpty() || addAfterNode == null || newItem == null) return null;
 
-        QueueNode<QueueItem> newNode = new QueueNode<>(newItem, addAfterNode, addAfterNode.getNextItem());
+        HandleNode newNode = this.newNode(newItem, addAfterNode, addAfterNode.getNextItem());
         if (addAfterNode.getNextItem() != null)
             addAfterNode.getNextItem().setPreviousItem(newNode);
+        else
+            tailElement = newNode;
         addAfterNode.setNextItem(newNode);
 
-        if (availablePriorities.containsKey(newItem.getPriority())) {
-            availablePriorities.get(newItem.getPriority()).lastNodeElement = newNode;
+        FirstLastPriorityItem firstLastPriorityItem = getPriorityItem(newItem.getPriority());
+        if (firstLastPriorityItem != null) {
+            firstLastPriorityItem.lastNodeElement = newNode;
         } else {
-            availablePriorities.put(newItem.getPriority(), new FirstLastPriorityItem(newNode, newNode));
+            this.addPriorityItem(newItem.getPriority(), newNode, newNode);
         }
         capacity++;
+        return newNode;
+    }
+
+    /**
+     * Methods links the run of nodes of the same priority into the queue:
+     * after the last node of the priority if exists, otherwise in front of the
+     * first node of the next priority or at the end of the queue.
+     * Updates the available list once for the whole run. Does not change the capacity.
+     *
+     * @param priority
+     * @param run
+     */
+    private void spliceRun(int priority, FirstLastPriorityItem run) {
+        QueueNode<QueueItem> previousNode;
+        FirstLastPriorityItem firstLastPriorityItem = getPriorityItem(priority);
+        if (firstLastPriorityItem != null) {
+            previousNode = firstLastPriorityItem.lastNodeElement;
+            firstLastPriorityItem.lastNodeElement = run.lastNodeElement;
+        } else {
+            int successorPriority = priorityIndex.nextSetBit(priority + 1);
+            previousNode = successorPriority == -1
+                    ? tailElement
+                    : getFirstNodeByPriority(successorPriority).getPreviousItem();
+            this.addPriorityItem(priority, run.firstNodeElement, run.lastNodeElement);
+        }
+
+        QueueNode<QueueItem> nextNode = previousNode == null ? headerElement : previousNode.getNextItem();
+        run.firstNodeElement.setPreviousItem(previousNode);
+        run.lastNodeElement.setNextItem(nextNode);
+        if (previousNode == null)
+            headerElement = run.firstNodeElement;
+        else
+            previousNode.setNextItem(run.firstNodeElement);
+        if (nextNode == null)
+            tailElement = run.lastNodeElement;
+        else
+            nextNode.setPreviousItem(run.lastNodeElement);
     }
 
     /**
-     * Methods works with the dequeue method. Updates the list of the available list.
+     * Methods works with the dequeue method. Updates the list of the available list
+     * if the removed node was the first or the last node of its priority.
      *
      * @param removeNode
      */
     private void updateAvailablePrioritiesForRemoveMethod(QueueNode<QueueItem> removeNode) {
         FirstLastPriorityItem firstLastPriorityItem =
-                availablePriorities.get(removeNode.getQueueItem().getPriority());
+                getPriorityItem(removeNode.getQueueItem().getPriority());
         if (firstLastPriorityItem.firstNodeElement.equals(firstLastPriorityItem.lastNodeElement)) {
-            availablePriorities.remove(removeNode.getQueueItem().getPriority());
-        } else {
+            this.removePriorityItem(removeNode.getQueueItem().getPriority());
+        } else if (firstLastPriorityItem.firstNodeElement.equals(removeNode)) {
             firstLastPriorityItem.firstNodeElement = removeNode.getNextItem();
+        } else if (firstLastPriorityItem.lastNodeElement.equals(removeNode)) {
+            firstLastPriorityItem.lastNodeElement = removeNode.getPreviousItem();
         }
     }
 
@@ -434,10 +1044,71 @@ public class CustomPriorityQueue {
      * @return QueueNode<QueueItem>
      */
     QueueNode<QueueItem> getLastNodeByPriority(int priority) {
-        if (availablePriorities.containsKey(priority)) {
-            return availablePriorities.get(priority).lastNodeElement;
+        FirstLastPriorityItem firstLastPriorityItem = getPriorityItem(priority);
+        return firstLastPriorityItem == null ? null : firstLastPriorityItem.lastNodeElement;
+    }
+
+    /**
+     * Methods returns the first and the last node of the specified priority.
+     * If the queue does not have the element of the specified priority returns null.
+     *
+     * @param priority
+     * @return FirstLastPriorityItem
+     */
+    private FirstLastPriorityItem getPriorityItem(int priority) {
+        if (densePriorityItems == null) return availablePriorities.get(priority);
+
+        if (priority < 0 || priority >= densePriorityItems.length) return null;
+        FirstLastPriorityItem firstLastPriorityItem = densePriorityItems[priority];
+        return firstLastPriorityItem.firstNodeElement == null ? null : firstLastPriorityItem;
+    }
+
+    /**
+     * Methods adds a new priority to the available list and to the priority index
+     * and reports it to the scheduling policy.
+     *
+     * @param priority
+     * @param firstNodeElement
+     * @param lastNodeElement
+     */
+    private void addPriorityItem(int priority, QueueNode<QueueItem> firstNodeElement, QueueNode<QueueItem> lastNodeElement) {
+        if (densePriorityItems == null) {
+            availablePriorities.put(priority, new FirstLastPriorityItem(firstNodeElement, lastNodeElement));
         } else {
-            return null;
+            densePriorityItems[priority].firstNodeElement = firstNodeElement;
+            densePriorityItems[priority].lastNodeElement = lastNodeElement;
+        }
+        priorityIndex.set(priority);
+        schedulingPolicy.onPriorityAdded(priority);
+    }
+
+    /**
+     * Methods removes the priority from the available list and from the priority index
+     * and reports it to the scheduling policy.
+     *
+     * @param priority
+     */
+    private void removePriorityItem(int priority) {
+        if (densePriorityItems == null) {
+            availablePriorities.remove(priority);
+        } else {
+            densePriorityItems[priority].firstNodeElement = null;
+            densePriorityItems[priority].lastNodeElement = null;
+        }
+        priorityIndex.clear(priority);
+        schedulingPolicy.onPriorityRemoved(priority);
+    }
+
+    /**
+     * Methods checks if the priority can be stored in the queue.
+     *
+     * @param priority
+     */
+    void checkPriority(int priority) {
+        if (densePriorityItems == null) {
+            PriorityBitmap.checkPriority(priority);
+        } else if (priority < 0 || priority >= densePriorityItems.length) {
+            throw new IllegalArgumentException("Priority must be in range [0, " + (densePriorityItems.length - 1) + "]: " + priority);
         }
     }
 
@@ -449,6 +1120,93 @@ public class CustomPriorityQueue {
         return this.headerElement;
     }
 
+    /**
+     * Methods return the tail element (last element) of the queue
+     * @return
+     */
+    QueueNode<QueueItem> getTailNodeElement() {
+        return this.tailElement;
+    }
+
+    /**
+     * Receives every discarded expired item with its position among the items of its priority,
+     * before the item is unlinked.
+     */
+    interface ExpirationRecorder {
+        void onExpire(int priority, int index);
+    }
+
+    /**
+     * View of the available priorities given to the scheduling policy.
+     */
+    private class PriorityQueueView implements SchedulingPolicy.QueueView {
+
+        @Override
+        public int getHighestPriority() {
+            int priority = isEmpty() ? -1 : headerElement.getQueueItem().getPriority();
+            while (expiringItems > 0 && priority != -1 && !removeExpiredHeads(priority))
+                priority = getNextQueuePriority(priority);
+            return priority;
+        }
+
+        @Override
+        public int getNextPriority(int priority) {
+            int nextPriority = getNextQueuePriority(priority);
+            while (expiringItems > 0 && nextPriority != -1 && !removeExpiredHeads(nextPriority))
+                nextPriority = getNextQueuePriority(nextPriority);
+            return nextPriority;
+        }
+
+        @Override
+        public boolean hasPriority(int priority) {
+            return priorityIndex.get(priority) && (expiringItems == 0 || removeExpiredHeads(priority));
+        }
+    }
+
+    /**
+     * Node of the queue, which is also the handle of its item.
+     */
+    private class HandleNode extends QueueNode<QueueItem> implements QueueHandle {
+
+        HandleNode(QueueItem queueItem, QueueNode<QueueItem> previousItem, QueueNode<QueueItem> nextItem) {
+            super(queueItem, previousItem, nextItem);
+        }
+
+        @Override
+        public boolean cancel() {
+            synchronized (CustomPriorityQueue.this) {
+                if (!CustomPriorityQueue.this.isQueued(this)) return false;
+                dequeue(this);
+                return true;
+            }
+        }
+
+        @Override
+        public boolean isQueued() {
+            return CustomPriorityQueue.this.isQueued(this);
+        }
+
+        private CustomPriorityQueue getQueue() {
+            return CustomPriorityQueue.this;
+        }
+    }
+
+    /**
+     * Node of an item enqueued while the aging is enabled, with the enqueue time,
+     * the enqueued priority and the number of the promotions of the item.
+     */
+    private final class AgingNode extends HandleNode {
+        private final long enqueueTime;
+        private final int enqueuedPriority;
+        private int promotions;
+
+        AgingNode(QueueItem queueItem, QueueNode<QueueItem> previousItem, QueueNode<QueueItem> nextItem, long enqueueTime) {
+            super(queueItem, previousItem, nextItem);
+            this.enqueueTime = enqueueTime;
+            this.enqueuedPriority = queueItem.getPriority();
+        }
+    }
+
     /**
      * Inner class for the available list. Contains the first and the last
      * node of the queue for a given priority.
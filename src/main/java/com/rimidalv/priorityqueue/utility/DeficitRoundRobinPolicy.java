@@ -0,0 +1,157 @@
+package com.rimidalv.priorityqueue.utility;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Scheduling policy of the weighted deficit round robin. The available priorities
+ * are served in a ring in the order they arrived; on its turn every priority gets
+ * the quantum of its weight and is served until the quantum is spent.
+ * Every item costs 1, so a priority of weight 3 is served 3 times per round.
+ * The ring is updated on the priority added and removed events, so the next priority
+ * is found in O(1) regardless of the number of the priorities.
+ */
+public class DeficitRoundRobinPolicy implements SchedulingPolicy {
+    private final IntUnaryOperator weights;
+    private final Map<Integer, Flow> flows;
+    private Flow current;
+
+    /**
+     * Creates the policy where every priority has the same weight.
+     */
+    public DeficitRoundRobinPolicy() {
+        this(priority -> 1);
+    }
+
+    /**
+     * Creates the policy with the weight function. The weight of a priority is read
+     * when the priority is added to the ring and must be positive.
+     *
+     * @param weights function from the priority to its weight
+     */
+    public DeficitRoundRobinPolicy(IntUnaryOperator weights) {
+        this.weights = weights;
+        this.flows = new HashMap<>();
+    }
+
+    private DeficitRoundRobinPolicy(DeficitRoundRobinPolicy policy) {
+        this(policy.weights);
+        if (policy.current == null) return;
+
+        Flow flow = policy.current;
+        do {
+            Flow copy = new Flow(flow.priority, flow.weight);
+            copy.deficit = flow.deficit;
+            this.link(copy);
+            flow = flow.next;
+        } while (flow != policy.current);
+    }
+
+    /**
+     * Method returns the priority on turn and charges it for one item.
+     * Moves the turn to the next priority of the ring when the quantum is spent.
+     *
+     * @param queueView
+     * @return int
+     */
+    @Override
+    public int nextPriority(QueueView queueView) {
+        if (current == null) return -1;
+
+        Flow flow = current;
+        if (flow.deficit == 0) flow.deficit = flow.weight;
+        if (--flow.deficit == 0) current = flow.next;
+        return flow.priority;
+    }
+
+    /**
+     * Method returns the priority on turn without charging it.
+     *
+     * @param queueView
+     * @return int
+     */
+    @Override
+    public int peekPriority(QueueView queueView) {
+        return current == null ? -1 : current.priority;
+    }
+
+    /**
+     * Method inserts the priority to the end of the current round.
+     * The priority on turn is not changed.
+     *
+     * @param priority
+     */
+    @Override
+    public void onPriorityAdded(int priority) {
+        if (flows.containsKey(priority)) return;
+
+        int weight = weights.applyAsInt(priority);
+        if (weight < 1)
+            throw new IllegalArgumentException("Weight must be positive: " + weight + " for priority " + priority);
+
+        this.link(new Flow(priority, weight));
+    }
+
+    /**
+     * Method removes the priority from the ring. If the priority was on turn,
+     * the turn goes to the next priority of the ring.
+     *
+     * @param priority
+     */
+    @Override
+    public void onPriorityRemoved(int priority) {
+        Flow flow = flows.remove(priority);
+        if (flow == null) return;
+
+        if (flow.next == flow) {
+            current = null;
+            return;
+        }
+        if (current == flow) current = flow.next;
+        flow.previous.next = flow.next;
+        flow.next.previous = flow.previous;
+    }
+
+    @Override
+    public SchedulingPolicy copy() {
+        return new DeficitRoundRobinPolicy(this);
+    }
+
+    /**
+     * Methods links the flow into the ring at the end of the current round,
+     * in front of the priority on turn.
+     *
+     * @param flow
+     */
+    private void link(Flow flow) {
+        flows.put(flow.priority, flow);
+        if (current == null) {
+            flow.next = flow;
+            flow.previous = flow;
+            current = flow;
+            return;
+        }
+
+        flow.next = current;
+        flow.previous = current.previous;
+        current.previous.next = flow;
+        current.previous = flow;
+    }
+
+    /**
+     * Node of the ring. Keeps the weight and the remaining quantum of a priority.
+     */
+    private static class Flow {
+        private final int priority;
+        private final int weight;
+        private int deficit;
+        private Flow previous;
+        private Flow next;
+
+        Flow(int priority, int weight) {
+            this.priority = priority;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.rimidalv.priorityqueue.utility;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import com.rimidalv.priorityqueue.domain.QueueNode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable mode of the {@link CustomPriorityQueue}. Every enqueue and dequeue is appended
+ * to a memory-mapped write-ahead journal before it is applied to the queue, and the queue
+ * is restored from the journal when it is opened again.
+ * The dequeue records keep only the priority. With the {@link BurstRatePolicy} the dequeues
+ * are replayed by the policy, so the burst counters are restored too; the checkpoint which
+ * starts every journal segment keeps the counters. With the other policies the first item
+ * of the priority is removed and the state of the policy starts over from the restored items.
+ * The journal is written to the page cache, so the records survive a crash of the process
+ * at once; the force decides how many survive a crash of the machine:
+ * <ul>
+ * <li>force window (the default, {@link #DEFAULT_FORCE_INTERVAL_MILLIS} ms): a daemon thread
+ * forces the journal once per window for all the records appended in it, and enqueue does not wait,
+ * so up to one window of enqueues can be lost. Costs about the same as no force.</li>
+ * <li>sync on commit: enqueue returns when its record is forced to the disk, the concurrent
+ * producers share one force. Nothing acknowledged is lost, but every enqueue waits for the disk,
+ * which is two orders of magnitude slower than the in-memory queue for a single producer.</li>
+ * <li>no force: the records reach the disk when the operating system writes the pages back.</li>
+ * </ul>
+ * Dequeue never waits for the force, so an item dequeued just before a crash is delivered again after the restart.
+ * The items keep their expiration time in the journal, and every expired item the queue discards is journaled
+ * too, so the replay, which does not expire items by the clock, discards the same items as the queue did.
+ * The {@link ExpiredItemReaper} of the queue must reap through this class, otherwise its removals are not journaled.
+ * The wrapped queue must not be changed directly: the journal does not replay the aging, the delayed items
+ * or the priority changes, so the queue must not have them when it is opened, and it rejects them afterwards.
+ *
+ * @param <T> type of the queue item value
+ */
+public class DurablePriorityQueue<T> implements Closeable, ExpiredItemRemover {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    public static final long DEFAULT_FORCE_INTERVAL_MILLIS = 10;
+
+    private final CustomPriorityQueue customPriorityQueue;
+    private final PayloadSerializer<T> payloadSerializer;
+    private final QueueJournal journal;
+    private final boolean syncOnCommit;
+    private final List<int[]> discardedItems = new ArrayList<>();
+    private ScheduledExecutorService forceExecutor;
+    private boolean closed;
+
+    /**
+     * Opens the queue with the default segment size and the default force window.
+     *
+     * @param directory
+     * @param customPriorityQueue
+     * @param payloadSerializer
+     * @throws IOException
+     */
+    public DurablePriorityQueue(Path directory, CustomPriorityQueue customPriorityQueue,
+                                PayloadSerializer<T> payloadSerializer) throws IOException {
+        this(directory, customPriorityQueue, payloadSerializer, DEFAULT_SEGMENT_SIZE,
+                DEFAULT_FORCE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens the queue which forces the journal once per force window, without waiting in enqueue.
+     *
+     * @param directory
+     * @param customPriorityQueue
+     * @param payloadSerializer
+     * @param segmentSize
+     * @param forceInterval
+     * @param unit
+     * @throws IOException
+     */
+    public DurablePriorityQueue(Path directory, CustomPriorityQueue customPriorityQueue, PayloadSerializer<T> payloadSerializer,
+                                int segmentSize, long forceInterval, TimeUnit unit) throws IOException {
+        this(directory, customPriorityQueue, payloadSerializer, segmentSize, false);
+        if (forceInterval <= 0) throw new IllegalArgumentException("Force interval must be positive: " + forceInterval);
+        this.forceExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "durable-queue-force");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.forceExecutor.scheduleWithFixedDelay(this::forceJournal, forceInterval, forceInterval, unit);
+    }
+
+    /**
+     * Opens the journal in the directory and restores the items of the journal to the empty queue.
+     * Creates a new journal if the directory does not contain one.
+     * The queue must have no delayed items and no aging.
+     * With the sync on commit every enqueue waits for the force of its record,
+     * otherwise the journal is not forced until it is closed.
+     *
+     * @param directory
+     * @param customPriorityQueue
+     * @param payloadSerializer
+     * @param segmentSize
+     * @param syncOnCommit
+     * @throws IOException
+     */
+    public DurablePriorityQueue(Path directory, CustomPriorityQueue customPriorityQueue, PayloadSerializer<T> payloadSerializer,
+                                int segmentSize, boolean syncOnCommit) throws IOException {
+        if (!customPriorityQueue.isEmpty() || customPriorityQueue.getDelayedSize() > 0)
+            throw new IllegalArgumentException("Queue must be empty");
+        if (customPriorityQueue.isAging()) throw new IllegalArgumentException("Aging of the queue can not be replayed");
+        this.customPriorityQueue = customPriorityQueue;
+        this.payloadSerializer = payloadSerializer;
+        this.syncOnCommit = syncOnCommit;
+        this.journal = new QueueJournal(directory, segmentSize);
+
+        synchronized (this) {
+            customPriorityQueue.setExpirationPaused(true);
+            try {
+                if (!journal.recover(new ReplayHandler())) this.writeCheckpoint();
+            } finally {
+                customPriorityQueue.setExpirationPaused(false);
+            }
+            customPriorityQueue.setExpirationRecorder((priority, index) -> discardedItems.add(new int[]{priority, index}));
+            customPriorityQueue.setJournaled(true);
+        }
+    }
+
+    /**
+     * Method journals and enqueues the item. The value is serialized before taking the lock.
+     * Returns false if the queue is out of capacity, otherwise true.
+     *
+     * @param queueItem
+     * @return boolean
+     */
+    public boolean enqueue(QueueItem<T> queueItem) {
+        byte[] payload = this.serialize(queueItem);
+        long position;
+        synchronized (this) {
+            customPriorityQueue.checkPriority(queueItem.getPriority());
+            if (!customPriorityQueue.hasFreeCapacity()) return false;
+
+            this.reserve(payload.length);
+            journal.append(enqueueRecordType(queueItem), queueItem.getPriority(), payload);
+            customPriorityQueue.enqueue(queueItem);
+            position = journal.getPosition();
+        }
+        if (syncOnCommit) journal.awaitDurable(position);
+        return true;
+    }
+
+    /**
+     * Method dequeues the next item and journals the dequeue, after the expired items
+     * the dequeue discarded.
+     * Returns null if the queue is empty.
+     *
+     * @return QueueItem
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized QueueItem<T> dequeue() {
+        if (customPriorityQueue.isEmpty()) return null;
+
+        QueueItem<T> queueItem = customPriorityQueue.dequeue();
+        this.journalRemovals(queueItem);
+        return queueItem;
+    }
+
+    /**
+     * Method removes the expired items, visiting at most the specified number of items,
+     * and journals the removals. Returns the number of the removed items.
+     *
+     * @param maximumVisited
+     * @return int
+     */
+    @Override
+    public synchronized int removeExpired(int maximumVisited) {
+        int removed = customPriorityQueue.removeExpired(maximumVisited);
+        this.journalRemovals(null);
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return customPriorityQueue.size();
+    }
+
+    public boolean isEmpty() {
+        return customPriorityQueue.isEmpty();
+    }
+
+    public boolean hasFreeCapacity() {
+        return customPriorityQueue.hasFreeCapacity();
+    }
+
+    /**
+     * Forces the journal to the disk and closes it.
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (forceExecutor != null) forceExecutor.shutdown();
+        journal.close();
+    }
+
+    /**
+     * Methods forces the records appended in the last force window. The position is read under
+     * the lock, the force runs without it, so the producers do not wait for the disk.
+     */
+    private void forceJournal() {
+        long position;
+        synchronized (this) {
+            if (closed) return;
+            position = journal.getPosition();
+        }
+        journal.awaitDurable(position);
+    }
+
+    /**
+     * Methods journals the removals the queue has just applied: the discarded expired items in the order
+     * of the discards and then the dequeue of the item, if there is one. If the current segment has no room
+     * for the records, starts a new segment with the checkpoint of the queue, which has the removals applied.
+     * Must be called holding the lock.
+     *
+     * @param queueItem
+     */
+    private void journalRemovals(QueueItem<T> queueItem) {
+        long recordBytes = (long) QueueJournal.recordBytes(4) * discardedItems.size();
+        if (queueItem != null) recordBytes += QueueJournal.recordBytes(0);
+        if (recordBytes == 0) return;
+
+        if (!journal.hasRoomForRecords(recordBytes)) {
+            discardedItems.clear();
+            try {
+                this.writeCheckpoint();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+        for (int[] discardedItem : discardedItems) {
+            journal.append(QueueJournal.EXPIRED, discardedItem[0], QueueJournal.intPayload(discardedItem[1]));
+        }
+        discardedItems.clear();
+        if (queueItem != null)
+            journal.append(QueueJournal.DEQUEUE, queueItem.getPriority(), QueueJournal.NO_PAYLOAD);
+    }
+
+    /**
+     * Methods serializes the value of the item, preceded by the expiration time if the item has one.
+     *
+     * @param queueItem
+     * @return byte[]
+     */
+    private byte[] serialize(QueueItem<T> queueItem) {
+        byte[] payload = payloadSerializer.serialize(queueItem.getQueueItem());
+        return queueItem.isExpiring() ? QueueJournal.expiringPayload(queueItem.getExpirationTime(), payload) : payload;
+    }
+
+    private static byte enqueueRecordType(QueueItem queueItem) {
+        return queueItem.isExpiring() ? QueueJournal.EXPIRING_ENQUEUE : QueueJournal.ENQUEUE;
+    }
+
+    /**
+     * Methods makes sure the current segment has room for a record with the payload
+     * of the specified length, otherwise starts a new segment with the checkpoint of the queue.
+     * Must be called holding the lock, before the queue is changed.
+     *
+     * @param payloadLength
+     */
+    private void reserve(int payloadLength) {
+        if (journal.hasRoom(payloadLength)) return;
+        try {
+            this.writeCheckpoint();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Methods writes the items of the queue in the list order and the burst counters
+     * to a new journal segment.
+     *
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    private void writeCheckpoint() throws IOException {
+        List<QueueItem> queueItems = customPriorityQueue.toList();
+        List<byte[]> payloads = new ArrayList<>(queueItems.size());
+        long checkpointBytes = 0;
+        for (QueueItem queueItem : queueItems) {
+            byte[] payload = this.serialize((QueueItem<T>) queueItem);
+            payloads.add(payload);
+            checkpointBytes += QueueJournal.recordBytes(payload.length);
+        }
+        BurstRatePolicy burstRatePolicy = this.getBurstRatePolicy();
+        Map<Integer, Integer> visitedPriorities =
+                burstRatePolicy == null ? Collections.emptyMap() : burstRatePolicy.getVisitedPriorities();
+        int[] drainedPriorities = burstRatePolicy == null ? new int[0] : burstRatePolicy.getDrainedPriorities();
+        checkpointBytes += (long) QueueJournal.recordBytes(4) * visitedPriorities.size();
+        checkpointBytes += (long) QueueJournal.recordBytes(0) * drainedPriorities.length;
+
+        journal.startCheckpoint(checkpointBytes);
+        for (int i = 0; i < queueItems.size(); i++) {
+            journal.append(enqueueRecordType(queueItems.get(i)), queueItems.get(i).getPriority(), payloads.get(i));
+        }
+        for (Map.Entry<Integer, Integer> visitedPriority : visitedPriorities.entrySet()) {
+            journal.append(QueueJournal.VISITED, visitedPriority.getKey(), QueueJournal.intPayload(visitedPriority.getValue()));
+        }
+        for (int drainedPriority : drainedPriorities) {
+            journal.append(QueueJournal.DRAINED, drainedPriority, QueueJournal.NO_PAYLOAD);
+        }
+        journal.endCheckpoint();
+    }
+
+    private BurstRatePolicy getBurstRatePolicy() {
+        SchedulingPolicy schedulingPolicy = customPriorityQueue.getSchedulingPolicy();
+        return schedulingPolicy instanceof BurstRatePolicy ? (BurstRatePolicy) schedulingPolicy : null;
+    }
+
+    /**
+     * Applies the journal records to the queue on recovery.
+     */
+    private class ReplayHandler implements QueueJournal.RecordHandler {
+
+        @Override
+        public void onEnqueue(int priority, long expirationTime, byte[] payload) {
+            customPriorityQueue.enqueue(new QueueItem<>(priority, payloadSerializer.deserialize(payload), expirationTime));
+        }
+
+        @Override
+        public void onDequeue(int priority) {
+            if (getBurstRatePolicy() == null) {
+                QueueNode<QueueItem> firstPriorityNode = customPriorityQueue.getFirstNodeByPriority(priority);
+                if (firstPriorityNode == null)
+                    throw new IllegalStateException("Journal does not match the queue: no item of priority " + priority);
+                customPriorityQueue.dequeue(firstPriorityNode);
+                return;
+            }
+
+            QueueItem queueItem = customPriorityQueue.dequeue();
+            if (queueItem == null || queueItem.getPriority() != priority)
+                throw new IllegalStateException("Journal does not match the queue: dequeued priority " + priority);
+        }
+
+        @Override
+        public void onExpired(int priority, int index) {
+            QueueNode<QueueItem> node = customPriorityQueue.getFirstNodeByPriority(priority);
+            for (int i = 0; i < index && node != null; i++) {
+                node = node.getNextItem();
+            }
+            if (node == null || node.getQueueItem().getPriority() != priority)
+                throw new IllegalStateException("Journal does not match the queue: no expired item of priority " + priority);
+            customPriorityQueue.dequeue(node);
+        }
+
+        @Override
+        public void onVisited(int priority, int timesVisited) {
+            BurstRatePolicy burstRatePolicy = getBurstRatePolicy();
+            if (burstRatePolicy != null) burstRatePolicy.setVisitedPriority(priority, timesVisited);
+        }
+
+        @Override
+        public void onDrained(int priority) {
+            BurstRatePolicy burstRatePolicy = getBurstRatePolicy();
+            if (burstRatePolicy != null) burstRatePolicy.addDrainedPriority(priority);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.rimidalv.priorityqueue.utility;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background reaper of the expired items of the {@link CustomPriorityQueue}.
+ * The dequeue discards only the expired items at the front of the priorities, so the
+ * expired items behind live ones keep their space until the reaper removes them.
+ * Every period the reaper walks the whole queue in parts of the batch size with
+ * {@link ExpiredItemRemover#removeExpired(int)}, on one daemon thread of the minimum priority.
+ * A queue wrapped by a service or a durable queue must be reaped through its owner, which takes
+ * its own lock once per part, signals the producers waiting for the freed space and journals
+ * the removals; reaping the wrapped queue directly leaves them waiting.
+ */
+public class ExpiredItemReaper implements AutoCloseable {
+    private final ExpiredItemRemover expiredItemRemover;
+    private final int batchSize;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Creates the reaper of the queue, or of the owner of the queue, and starts it.
+     *
+     * @param expiredItemRemover
+     * @param period    time between the walks of the queue
+     * @param unit
+     * @param batchSize number of the items visited under one lock hold
+     */
+    public ExpiredItemReaper(ExpiredItemRemover expiredItemRemover, long period, TimeUnit unit, int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        this.expiredItemRemover = expiredItemRemover;
+        this.batchSize = batchSize;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "expired-item-reaper");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.executor.scheduleWithFixedDelay(this::reap, period, period, unit);
+    }
+
+    /**
+     * Methods walks the queue once and returns the number of the removed items.
+     *
+     * @return int
+     */
+    int reap() {
+        int removed = 0;
+        int batches = expiredItemRemover.size() / batchSize + 1;
+        for (int batch = 0; batch < batches && !Thread.currentThread().isInterrupted(); batch++) {
+            removed += expiredItemRemover.removeExpired(batchSize);
+        }
+        return removed;
+    }
+
+    /**
+     * Stops the reaper. A walk in progress stops after the current part.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
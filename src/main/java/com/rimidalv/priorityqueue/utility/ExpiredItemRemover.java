@@ -0,0 +1,25 @@
+package com.rimidalv.priorityqueue.utility;
+
+/**
+ * Queue whose expired items the {@link ExpiredItemReaper} removes. A queue wrapped by a service
+ * is reaped through the service, which holds its own lock while removing and signals the producers
+ * waiting for the freed space.
+ */
+public interface ExpiredItemRemover {
+
+    /**
+     * Returns the number of the items in the queue.
+     *
+     * @return int
+     */
+    int size();
+
+    /**
+     * Removes the expired items, visiting at most the specified number of items from where
+     * the previous call stopped. Returns the number of the removed items.
+     *
+     * @param maximumVisited
+     * @return int
+     */
+    int removeExpired(int maximumVisited);
+}
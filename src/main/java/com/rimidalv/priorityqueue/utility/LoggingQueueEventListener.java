@@ -0,0 +1,64 @@
+package com.rimidalv.priorityqueue.utility;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Queue event listener which writes the events to java.util.logging.
+ * Every event is checked against the logger level before the message is built.
+ */
+public class LoggingQueueEventListener implements QueueEventListener {
+    private static final Logger LOGGER = Logger.getLogger( LoggingQueueEventListener.class.getName() );
+
+    private final Level level;
+
+    public LoggingQueueEventListener() {
+        this(Level.INFO);
+    }
+
+    public LoggingQueueEventListener(Level level) {
+        this.level = level;
+    }
+
+    @Override
+    public void onEnqueue(int priority, int size) {
+        if (LOGGER.isLoggable(level))
+            LOGGER.log(level, "Enqueued item with priority {0}, queue size: {1}", new Object[] {priority, size});
+    }
+
+    @Override
+    public void onDequeue(int priority, int size) {
+        if (LOGGER.isLoggable(level))
+            LOGGER.log(level, "Dequeued item with priority {0}, queue size: {1}", new Object[] {priority, size});
+    }
+
+    @Override
+    public void onExpire(int priority, int size) {
+        if (LOGGER.isLoggable(level))
+            LOGGER.log(level, "Discarded expired item with priority {0}, queue size: {1}", new Object[] {priority, size});
+    }
+
+    @Override
+    public void onPromote(int priority, int newPriority) {
+        if (LOGGER.isLoggable(level))
+            LOGGER.log(level, "Promoted aged item from priority {0} to {1}", new Object[] {priority, newPriority});
+    }
+
+    @Override
+    public void onReject(int priority) {
+        if (LOGGER.isLoggable(level))
+            LOGGER.log(level, "Queue is out of capacity, rejected item with priority {0}", priority);
+    }
+
+    @Override
+    public void onProducerWait(long waitedNanos) {
+        if (LOGGER.isLoggable(level))
+            LOGGER.log(level, "Waited {0} ns for free space", waitedNanos);
+    }
+
+    @Override
+    public void onConsumerWait(long waitedNanos) {
+        if (LOGGER.isLoggable(level))
+            LOGGER.log(level, "Waited {0} ns for a new item to process", waitedNanos);
+    }
+}
@@ -0,0 +1,233 @@
+package com.rimidalv.priorityqueue.utility;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Store of the payload bytes in direct {@link ByteBuffer} arenas outside of the Java heap.
+ * Payloads are appended to the current arena with an 8 byte header of the length and the slot.
+ * The handle of a payload is its slot in the table of the locations, which holds the arena index
+ * (high 32 bits) and the offset (low 32 bits), so a payload can be moved without changing its handle.
+ * An arena counts its live payloads and is reused when all of them are released,
+ * which suits the queue where the payloads are released roughly in the order of the store.
+ * The payloads which stay in the queue longer would pin their arenas, so the live payloads of an arena
+ * with at most a quarter of live bytes are moved to the next arena when the arena is filled, and to a new
+ * arena when it is allocated, and the emptied arena is reused. The reserved size stays within about
+ * four times the live bytes.
+ * The total size is limited by -XX:MaxDirectMemorySize, not by the heap size.
+ */
+final class OffHeapPayloadStore {
+    private static final int HEADER_BYTES = 8;
+    private static final int RELEASED = -1;
+    private static final int SPARSE_ARENA_DIVISOR = 4;
+
+    private final int arenaSize;
+    private final List<Arena> arenas = new ArrayList<>();
+    private final ArrayDeque<Arena> freeArenas = new ArrayDeque<>();
+    private Arena currentArena;
+    private long payloadBytes;
+
+    private long[] locations = new long[16];
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+    private int slotCount;
+
+    OffHeapPayloadStore(int arenaSize) {
+        if (arenaSize <= HEADER_BYTES)
+            throw new IllegalArgumentException("Arena size must be greater than " + HEADER_BYTES + ": " + arenaSize);
+        this.arenaSize = arenaSize;
+    }
+
+    /**
+     * Copies the payload to an arena and returns its handle.
+     *
+     * @param payload
+     * @return long
+     */
+    synchronized long store(byte[] payload) {
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (payload.length > arenaSize - HEADER_BYTES)
+            throw new IllegalArgumentException("Payload of " + payload.length + " bytes does not fit the arena of " + arenaSize + " bytes");
+
+        int slot = this.nextSlot();
+        int offset = this.allocate(recordBytes);
+        ByteBuffer buffer = currentArena.buffer;
+        buffer.putInt(offset, payload.length);
+        buffer.putInt(offset + 4, slot);
+        ((Buffer) buffer).position(offset + HEADER_BYTES);
+        buffer.put(payload);
+        locations[slot] = ((long) currentArena.index << 32) | offset;
+        payloadBytes += payload.length;
+
+        return slot;
+    }
+
+    /**
+     * Copies the payload of the handle to a new array.
+     *
+     * @param handle
+     * @return byte[]
+     */
+    synchronized byte[] read(long handle) {
+        long location = this.getLocation(handle);
+        Arena arena = arenas.get((int) (location >>> 32));
+        int offset = (int) location;
+
+        byte[] payload = new byte[arena.buffer.getInt(offset)];
+        ((Buffer) arena.buffer).position(offset + HEADER_BYTES);
+        arena.buffer.get(payload);
+        return payload;
+    }
+
+    /**
+     * Releases the payload of the handle. The arena is reused when its last payload is released.
+     *
+     * @param handle
+     */
+    synchronized void release(long handle) {
+        long location = this.getLocation(handle);
+        Arena arena = arenas.get((int) (location >>> 32));
+        int offset = (int) location;
+        int length = arena.buffer.getInt(offset);
+
+        arena.buffer.putInt(offset + 4, RELEASED);
+        locations[(int) handle] = RELEASED;
+        freeSlots[freeSlotCount++] = (int) handle;
+        payloadBytes -= length;
+        arena.liveBytes -= HEADER_BYTES + length;
+        if (--arena.livePayloads == 0) {
+            arena.position = 0;
+            if (arena != currentArena) freeArenas.addLast(arena);
+        }
+    }
+
+    /**
+     * Returns the number of the payload bytes which are stored and not released.
+     *
+     * @return long
+     */
+    synchronized long getPayloadBytes() {
+        return payloadBytes;
+    }
+
+    /**
+     * Returns the number of the off-heap bytes reserved by the arenas.
+     *
+     * @return long
+     */
+    synchronized long getReservedBytes() {
+        return (long) arenas.size() * arenaSize;
+    }
+
+    private int allocate(int recordBytes) {
+        if (currentArena == null || currentArena.position + recordBytes > arenaSize) {
+            Arena filledArena = currentArena;
+            currentArena = this.nextArena();
+            if (filledArena != null && this.isSparse(filledArena)) this.moveLivePayloads(filledArena, currentArena);
+            if (currentArena.position + recordBytes > arenaSize) currentArena = this.nextArena();
+        }
+        int offset = currentArena.position;
+        currentArena.position = offset + recordBytes;
+        currentArena.livePayloads++;
+        currentArena.liveBytes += recordBytes;
+        return offset;
+    }
+
+    private Arena nextArena() {
+        Arena arena = freeArenas.pollFirst();
+        if (arena != null) return arena;
+
+        Arena sparseArena = this.findSparseArena();
+        arena = new Arena(arenas.size(), ByteBuffer.allocateDirect(arenaSize));
+        arenas.add(arena);
+        if (sparseArena != null) this.moveLivePayloads(sparseArena, arena);
+        return arena;
+    }
+
+    /**
+     * Finds the arena, other than the current one, with the fewest live bytes, if at most
+     * a quarter of it is live.
+     *
+     * @return Arena
+     */
+    private Arena findSparseArena() {
+        Arena sparseArena = null;
+        for (Arena arena : arenas) {
+            if (arena == currentArena || !this.isSparse(arena)) continue;
+            if (sparseArena == null || arena.liveBytes < sparseArena.liveBytes) sparseArena = arena;
+        }
+        return sparseArena;
+    }
+
+    private boolean isSparse(Arena arena) {
+        return arena.livePayloads > 0 && arena.liveBytes <= arenaSize / SPARSE_ARENA_DIVISOR;
+    }
+
+    /**
+     * Moves the live payloads of the arena to the arena with enough space, updates their locations
+     * and puts the emptied arena to the free arenas.
+     *
+     * @param source
+     * @param target
+     */
+    private void moveLivePayloads(Arena source, Arena target) {
+        ByteBuffer sourceBuffer = source.buffer.duplicate();
+        int offset = 0;
+        while (offset < source.position) {
+            int recordBytes = HEADER_BYTES + source.buffer.getInt(offset);
+            int slot = source.buffer.getInt(offset + 4);
+            if (slot != RELEASED) {
+                ((Buffer) sourceBuffer).limit(offset + recordBytes).position(offset);
+                ((Buffer) target.buffer).position(target.position);
+                target.buffer.put(sourceBuffer);
+                locations[slot] = ((long) target.index << 32) | target.position;
+                target.position += recordBytes;
+                target.livePayloads++;
+                target.liveBytes += recordBytes;
+            }
+            offset += recordBytes;
+        }
+        source.position = 0;
+        source.livePayloads = 0;
+        source.liveBytes = 0;
+        freeArenas.addLast(source);
+    }
+
+    private int nextSlot() {
+        if (freeSlotCount > 0) return freeSlots[--freeSlotCount];
+        if (slotCount == locations.length) {
+            locations = Arrays.copyOf(locations, slotCount * 2);
+            freeSlots = Arrays.copyOf(freeSlots, slotCount * 2);
+        }
+        return slotCount++;
+    }
+
+    private long getLocation(long handle) {
+        if (handle < 0 || handle >= slotCount)
+            throw new IllegalArgumentException("Unknown payload handle: " + handle);
+        long location = locations[(int) handle];
+        if (location == RELEASED)
+            throw new IllegalStateException("Payload of the handle was released: " + handle);
+        return location;
+    }
+
+    /**
+     * Direct buffer with its allocation position and the number of the live payloads and bytes.
+     */
+    private static class Arena {
+        private final int index;
+        private final ByteBuffer buffer;
+        private int position;
+        private int livePayloads;
+        private int liveBytes;
+
+        Arena(int index, ByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+        }
+    }
+}
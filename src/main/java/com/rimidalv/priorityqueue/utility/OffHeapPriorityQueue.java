@@ -0,0 +1,106 @@
+package com.rimidalv.priorityqueue.utility;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+
+/**
+ * Priority queue of serialized payloads kept outside of the Java heap.
+ * The payload bytes are copied to direct buffer arenas and the priority queue holds
+ * only the handle of every payload, so the heap usage per item does not depend on the
+ * payload size. The payload is copied back to the heap and released on dequeue.
+ * Dequeue order is the order of the wrapped {@link CustomPriorityQueue}.
+ * The off-heap size is limited by -XX:MaxDirectMemorySize.
+ */
+public class OffHeapPriorityQueue {
+    public static final int DEFAULT_ARENA_SIZE = 64 << 20;
+
+    private final CustomPriorityQueue handleQueue;
+    private final OffHeapPayloadStore payloadStore;
+
+    public OffHeapPriorityQueue(int maximumCapacity, boolean inDepthSearch) {
+        this(new CustomPriorityQueue(maximumCapacity, inDepthSearch), DEFAULT_ARENA_SIZE);
+    }
+
+    /**
+     * Creates the queue over the empty queue of the handles. The largest payload
+     * is the arena size minus 8 bytes of the header.
+     *
+     * @param handleQueue
+     * @param arenaSize
+     */
+    public OffHeapPriorityQueue(CustomPriorityQueue handleQueue, int arenaSize) {
+        if (!handleQueue.isEmpty()) throw new IllegalArgumentException("Queue of the handles must be empty");
+        this.handleQueue = handleQueue;
+        this.payloadStore = new OffHeapPayloadStore(arenaSize);
+    }
+
+    /**
+     * Method copies the payload off the heap and enqueues its handle.
+     * The payload is copied before taking the queue lock, after the priority is checked,
+     * so an invalid priority throws IllegalArgumentException without storing the payload.
+     * Returns false if the queue is out of capacity, otherwise true.
+     *
+     * @param priority
+     * @param payload
+     * @return boolean
+     */
+    public boolean enqueue(int priority, byte[] payload) {
+        handleQueue.checkPriority(priority);
+        long handle = payloadStore.store(payload);
+        synchronized (handleQueue) {
+            if (handleQueue.hasFreeCapacity()) {
+                handleQueue.enqueue(new QueueItem<>(priority, handle));
+                return true;
+            }
+        }
+        payloadStore.release(handle);
+        return false;
+    }
+
+    /**
+     * Method dequeues the next handle, copies its payload to the heap and releases it.
+     * Returns the item with the payload bytes, or null if the queue is empty.
+     *
+     * @return QueueItem<byte[]>
+     */
+    public QueueItem<byte[]> dequeue() {
+        QueueItem handleItem = handleQueue.dequeue();
+        if (handleItem == null) return null;
+
+        long handle = (Long) handleItem.getQueueItem();
+        try {
+            return new QueueItem<>(handleItem.getPriority(), payloadStore.read(handle));
+        } finally {
+            payloadStore.release(handle);
+        }
+    }
+
+    public int size() {
+        return handleQueue.size();
+    }
+
+    public boolean isEmpty() {
+        return handleQueue.isEmpty();
+    }
+
+    public boolean hasFreeCapacity() {
+        return handleQueue.hasFreeCapacity();
+    }
+
+    /**
+     * Method returns the number of the payload bytes in the queue.
+     *
+     * @return long
+     */
+    public long getPayloadBytes() {
+        return payloadStore.getPayloadBytes();
+    }
+
+    /**
+     * Method returns the number of the off-heap bytes reserved by the queue.
+     *
+     * @return long
+     */
+    public long getReservedBytes() {
+        return payloadStore.getReservedBytes();
+    }
+}
@@ -0,0 +1,54 @@
+package com.rimidalv.priorityqueue.utility;
+
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+/**
+ * Converts the value of a queue item to bytes and back, so the item can be written
+ * to the journal or to the snapshot of the queue.
+ *
+ * @param <T> type of the queue item value
+ */
+public interface PayloadSerializer<T> {
+
+    byte[] serialize(T value);
+
+    T deserialize(byte[] payload);
+
+    /**
+     * Reads the value of the specified length from the position of the buffer.
+     * The default implementation copies the bytes to a new array; a serializer
+     * can read the buffer directly to skip the copy when a snapshot is restored.
+     *
+     * @param buffer
+     * @param length
+     * @return T
+     */
+    default T deserialize(ByteBuffer buffer, int length) {
+        byte[] payload = new byte[length];
+        buffer.get(payload);
+        return this.deserialize(payload);
+    }
+
+    /**
+     * Returns the serializer of the two functions.
+     *
+     * @param serializer
+     * @param deserializer
+     * @param <T>
+     * @return PayloadSerializer
+     */
+    static <T> PayloadSerializer<T> of(Function<T, byte[]> serializer, Function<byte[], T> deserializer) {
+        return new PayloadSerializer<T>() {
+            @Override
+            public byte[] serialize(T value) {
+                return serializer.apply(value);
+            }
+
+            @Override
+            public T deserialize(byte[] payload) {
+                return deserializer.apply(payload);
+            }
+        };
+    }
+}
@@ -0,0 +1,167 @@
+package com.rimidalv.priorityqueue.utility;
+
+import java.util.Arrays;
+
+/**
+ * Two-level bitmap over the non-negative priority range. The lower level keeps
+ * one bit per priority, the summary level keeps one bit per non-empty lower word,
+ * so the next set priority is found by looking at a single word and then
+ * skipping 4096 priorities per summary word.
+ * The bitmap grows on demand up to {@link #MAX_PRIORITY}.
+ */
+final class PriorityBitmap {
+    static final int MAX_PRIORITY = (1 << 24) - 1;
+
+    private static final int INITIAL_WORDS = 64;
+
+    private long[] words;
+    private long[] summary;
+
+    PriorityBitmap() {
+        this.words = new long[INITIAL_WORDS];
+        this.summary = new long[1];
+    }
+
+    /**
+     * Creates the bitmap sized for the priorities [0, priorityRange), so setting
+     * these priorities never grows the bitmap.
+     *
+     * @param priorityRange
+     */
+    PriorityBitmap(int priorityRange) {
+        int wordCount = INITIAL_WORDS;
+        while (wordCount << 6 < priorityRange) wordCount <<= 1;
+        this.words = new long[wordCount];
+        this.summary = new long[(wordCount + 63) >>> 6];
+    }
+
+    PriorityBitmap(PriorityBitmap bitmap) {
+        this.words = bitmap.words.clone();
+        this.summary = bitmap.summary.clone();
+    }
+
+    /**
+     * Marks the specified priority as present.
+     *
+     * @param priority
+     */
+    void set(int priority) {
+        checkPriority(priority);
+        int wordIndex = priority >>> 6;
+        ensureCapacity(wordIndex);
+        words[wordIndex] |= 1L << priority;
+        summary[wordIndex >>> 6] |= 1L << wordIndex;
+    }
+
+    /**
+     * Marks the specified priority as absent.
+     *
+     * @param priority
+     */
+    void clear(int priority) {
+        if (priority < 0) return;
+        int wordIndex = priority >>> 6;
+        if (wordIndex >= words.length) return;
+
+        words[wordIndex] &= ~(1L << priority);
+        if (words[wordIndex] == 0)
+            summary[wordIndex >>> 6] &= ~(1L << wordIndex);
+    }
+
+    /**
+     * Checks if the specified priority is present.
+     *
+     * @param priority
+     * @return boolean
+     */
+    boolean get(int priority) {
+        if (priority < 0) return false;
+        int wordIndex = priority >>> 6;
+        return wordIndex < words.length && (words[wordIndex] & (1L << priority)) != 0;
+    }
+
+    /**
+     * Returns the lowest present priority greater or equal to the specified one,
+     * otherwise -1.
+     *
+     * @param fromPriority
+     * @return int
+     */
+    int nextSetBit(int fromPriority) {
+        if (fromPriority < 0) fromPriority = 0;
+        int wordIndex = fromPriority >>> 6;
+        if (wordIndex >= words.length) return -1;
+
+        long word = words[wordIndex] & (-1L << fromPriority);
+        if (word != 0)
+            return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+
+        int nextWordIndex = wordIndex + 1;
+        int summaryIndex = nextWordIndex >>> 6;
+        if (summaryIndex >= summary.length) return -1;
+
+        long summaryWord = summary[summaryIndex] & (-1L << nextWordIndex);
+        while (summaryWord == 0) {
+            if (++summaryIndex == summary.length) return -1;
+            summaryWord = summary[summaryIndex];
+        }
+
+        wordIndex = (summaryIndex << 6) + Long.numberOfTrailingZeros(summaryWord);
+        return (wordIndex << 6) + Long.numberOfTrailingZeros(words[wordIndex]);
+    }
+
+    /**
+     * Returns the highest present priority less or equal to the specified one,
+     * otherwise -1.
+     *
+     * @param fromPriority
+     * @return int
+     */
+    int previousSetBit(int fromPriority) {
+        if (fromPriority < 0) return -1;
+        int wordIndex = fromPriority >>> 6;
+        if (wordIndex >= words.length) {
+            wordIndex = words.length - 1;
+            fromPriority = (wordIndex << 6) + 63;
+        }
+
+        long word = words[wordIndex] & (-1L >>> (63 - (fromPriority & 63)));
+        if (word != 0)
+            return (wordIndex << 6) + 63 - Long.numberOfLeadingZeros(word);
+
+        int previousWordIndex = wordIndex - 1;
+        if (previousWordIndex < 0) return -1;
+        int summaryIndex = previousWordIndex >>> 6;
+
+        long summaryWord = summary[summaryIndex] & (-1L >>> (63 - (previousWordIndex & 63)));
+        while (summaryWord == 0) {
+            if (--summaryIndex < 0) return -1;
+            summaryWord = summary[summaryIndex];
+        }
+
+        wordIndex = (summaryIndex << 6) + 63 - Long.numberOfLeadingZeros(summaryWord);
+        return (wordIndex << 6) + 63 - Long.numberOfLeadingZeros(words[wordIndex]);
+    }
+
+    /**
+     * Removes all the priorities from the bitmap.
+     */
+    void clear() {
+        Arrays.fill(words, 0);
+        Arrays.fill(summary, 0);
+    }
+
+    private void ensureCapacity(int wordIndex) {
+        if (wordIndex < words.length) return;
+
+        int newLength = words.length;
+        while (newLength <= wordIndex) newLength <<= 1;
+        words = Arrays.copyOf(words, newLength);
+        summary = Arrays.copyOf(summary, (newLength + 63) >>> 6);
+    }
+
+    static void checkPriority(int priority) {
+        if (priority < 0 || priority > MAX_PRIORITY)
+            throw new IllegalArgumentException("Priority must be in range [0, " + MAX_PRIORITY + "]: " + priority);
+    }
+}
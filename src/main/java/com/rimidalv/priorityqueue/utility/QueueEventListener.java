@@ -0,0 +1,71 @@
+package com.rimidalv.priorityqueue.utility;
+
+/**
+ * Listener of the queue events. All the callbacks take primitive arguments and
+ * do nothing by default, so the default {@link #NO_OP} listener costs nothing
+ * once the call is inlined.
+ * Callbacks are invoked while the queue lock is held and must not block.
+ */
+public interface QueueEventListener {
+    QueueEventListener NO_OP = new QueueEventListener() { };
+
+    /**
+     * Called after an item was inserted to the queue.
+     *
+     * @param priority priority of the inserted item
+     * @param size     number of the elements in the queue after the insert
+     */
+    default void onEnqueue(int priority, int size) {
+    }
+
+    /**
+     * Called after an item was removed from the queue by a dequeue.
+     *
+     * @param priority priority of the removed item
+     * @param size     number of the elements in the queue after the removal
+     */
+    default void onDequeue(int priority, int size) {
+    }
+
+    /**
+     * Called after an expired item was discarded from the queue.
+     *
+     * @param priority priority of the discarded item
+     * @param size     number of the elements in the queue after the removal
+     */
+    default void onExpire(int priority, int size) {
+    }
+
+    /**
+     * Called after an aged item was moved to a higher priority.
+     *
+     * @param priority    priority the item was moved from
+     * @param newPriority priority the item was moved to
+     */
+    default void onPromote(int priority, int newPriority) {
+    }
+
+    /**
+     * Called when an item was not inserted because the queue is out of capacity.
+     *
+     * @param priority priority of the rejected item
+     */
+    default void onReject(int priority) {
+    }
+
+    /**
+     * Called when a producer finished waiting for a free space.
+     *
+     * @param waitedNanos time the producer waited
+     */
+    default void onProducerWait(long waitedNanos) {
+    }
+
+    /**
+     * Called when a consumer finished waiting for a new item.
+     *
+     * @param waitedNanos time the consumer waited
+     */
+    default void onConsumerWait(long waitedNanos) {
+    }
+}
@@ -0,0 +1,27 @@
+package com.rimidalv.priorityqueue.utility;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+
+/**
+ * Handle of an item enqueued to the {@link CustomPriorityQueue}. Cancels the item in O(1)
+ * by unlinking its node, without searching the queue.
+ */
+public interface QueueHandle {
+
+    /**
+     * Removes the item from the queue if it is still there.
+     * Returns true if the item was removed, false if it was dequeued or cancelled before.
+     *
+     * @return boolean
+     */
+    boolean cancel();
+
+    /**
+     * Returns true if the item is still in the queue.
+     *
+     * @return boolean
+     */
+    boolean isQueued();
+
+    QueueItem getQueueItem();
+}
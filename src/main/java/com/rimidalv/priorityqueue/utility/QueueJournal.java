@@ -0,0 +1,399 @@
+package com.rimidalv.priorityqueue.utility;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of the queue operations in memory-mapped segment files.
+ * A record is the body length, the CRC32 of the body and the body: the record type,
+ * the priority and the payload. An item with the expiration time is journaled as an expiring enqueue,
+ * whose payload starts with the expiration time, and the expired items the queue discards are journaled
+ * by their position among the items of their priority. Every segment starts with a checkpoint of the whole queue,
+ * so only the newest segment with a complete checkpoint is needed on recovery and the
+ * older segments are deleted when the checkpoint is durable.
+ * Records are appended by a single writer holding the lock of the journal owner;
+ * {@link #awaitDurable(long)} may be called by any thread without the lock, the writes
+ * of the concurrent callers are forced to the disk together.
+ */
+final class QueueJournal implements Closeable {
+    static final byte ENQUEUE = 1;
+    static final byte DEQUEUE = 2;
+    static final byte CHECKPOINT_START = 3;
+    static final byte VISITED = 4;
+    static final byte CHECKPOINT_END = 5;
+    static final byte DRAINED = 6;
+    static final byte EXPIRING_ENQUEUE = 7;
+    static final byte EXPIRED = 8;
+
+    static final byte[] NO_PAYLOAD = new byte[0];
+
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int BODY_HEADER_BYTES = 5;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final CRC32 crc = new CRC32();
+    private byte[] recordBuffer = new byte[256];
+
+    private volatile Segment currentSegment;
+    private int nextSegmentId;
+
+    private final Object syncLock = new Object();
+    private long durablePosition = -1;
+    private boolean forcing;
+
+    /**
+     * Handler of the records read on recovery.
+     */
+    interface RecordHandler {
+        void onEnqueue(int priority, long expirationTime, byte[] payload);
+
+        void onDequeue(int priority);
+
+        void onExpired(int priority, int index);
+
+        void onVisited(int priority, int timesVisited);
+
+        void onDrained(int priority);
+    }
+
+    QueueJournal(Path directory, int segmentSize) throws IOException {
+        if (segmentSize < 1024) throw new IllegalArgumentException("Segment size must be at least 1024 bytes: " + segmentSize);
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Reads the newest segment with a complete checkpoint and passes its records to the handler.
+     * Deletes the other segments and continues the journal after the last valid record.
+     * Returns false if the directory did not contain a journal.
+     *
+     * @param recordHandler
+     * @return boolean
+     * @throws IOException
+     */
+    boolean recover(RecordHandler recordHandler) throws IOException {
+        List<Integer> segmentIds = this.listSegmentIds();
+        if (segmentIds.isEmpty()) return false;
+        nextSegmentId = segmentIds.get(segmentIds.size() - 1) + 1;
+
+        Segment recoveredSegment = null;
+        for (int i = segmentIds.size() - 1; i >= 0 && recoveredSegment == null; i--) {
+            Segment segment = this.openSegment(segmentIds.get(i));
+            if (this.hasCompleteCheckpoint(segment)) recoveredSegment = segment;
+        }
+        if (recoveredSegment == null)
+            throw new IOException("Journal in " + directory + " does not contain a complete checkpoint");
+
+        for (int segmentId : segmentIds) {
+            if (segmentId != recoveredSegment.id) Files.delete(this.segmentPath(segmentId));
+        }
+
+        recoveredSegment.position = this.replay(recoveredSegment, recordHandler);
+        byte[] zeros = new byte[4096];
+        ((Buffer) recoveredSegment.buffer).position(recoveredSegment.position);
+        while (recoveredSegment.buffer.hasRemaining()) {
+            recoveredSegment.buffer.put(zeros, 0, Math.min(zeros.length, recoveredSegment.buffer.remaining()));
+        }
+        currentSegment = recoveredSegment;
+        return true;
+    }
+
+    /**
+     * Checks if the current segment has room for a record with the payload of the specified length.
+     *
+     * @param payloadLength
+     * @return boolean
+     */
+    boolean hasRoom(int payloadLength) {
+        return this.hasRoomForRecords(recordBytes(payloadLength));
+    }
+
+    /**
+     * Checks if the current segment has room for the records of the specified number of bytes.
+     *
+     * @param recordBytes
+     * @return boolean
+     */
+    boolean hasRoomForRecords(long recordBytes) {
+        return currentSegment != null && currentSegment.position + recordBytes <= currentSegment.size;
+    }
+
+    /**
+     * Forces the current segment and starts a new one with the checkpoint start record.
+     * The new segment has room for the checkpoint of the specified number of bytes and the segment size.
+     *
+     * @param checkpointBytes
+     * @throws IOException
+     */
+    void startCheckpoint(long checkpointBytes) throws IOException {
+        long size = checkpointBytes + recordBytes(0) * 2L + segmentSize;
+        if (size > Integer.MAX_VALUE) throw new IOException("Checkpoint of " + checkpointBytes + " bytes does not fit a segment");
+
+        if (currentSegment != null) currentSegment.buffer.force();
+        currentSegment = this.createSegment(nextSegmentId++, (int) size);
+        this.append(CHECKPOINT_START, 0, NO_PAYLOAD);
+    }
+
+    /**
+     * Appends the checkpoint end record, forces the segment and deletes the previous segments.
+     *
+     * @throws IOException
+     */
+    void endCheckpoint() throws IOException {
+        this.append(CHECKPOINT_END, 0, NO_PAYLOAD);
+        currentSegment.buffer.force();
+
+        for (int segmentId : this.listSegmentIds()) {
+            if (segmentId < currentSegment.id) Files.delete(this.segmentPath(segmentId));
+        }
+    }
+
+    /**
+     * Appends the record to the current segment, which must have room for it.
+     *
+     * @param type
+     * @param priority
+     * @param payload
+     */
+    void append(byte type, int priority, byte[] payload) {
+        int bodyLength = BODY_HEADER_BYTES + payload.length;
+        if (recordBuffer.length < bodyLength) recordBuffer = new byte[Math.max(bodyLength, recordBuffer.length * 2)];
+        recordBuffer[0] = type;
+        putInt(recordBuffer, 1, priority);
+        System.arraycopy(payload, 0, recordBuffer, BODY_HEADER_BYTES, payload.length);
+        crc.reset();
+        crc.update(recordBuffer, 0, bodyLength);
+
+        Segment segment = currentSegment;
+        int position = segment.position;
+        segment.buffer.putInt(position, bodyLength);
+        segment.buffer.putInt(position + 4, (int) crc.getValue());
+        ((Buffer) segment.buffer).position(position + RECORD_HEADER_BYTES);
+        segment.buffer.put(recordBuffer, 0, bodyLength);
+        segment.position = position + RECORD_HEADER_BYTES + bodyLength;
+    }
+
+    /**
+     * Returns the journal position after the last appended record.
+     *
+     * @return long
+     */
+    long getPosition() {
+        Segment segment = currentSegment;
+        return ((long) segment.id << 32) | segment.position;
+    }
+
+    /**
+     * Waits until the journal is forced to the disk up to the specified position.
+     * The first waiting thread forces the segment for all the threads which appended
+     * before the force started, the others wait for it.
+     *
+     * @param position
+     */
+    void awaitDurable(long position) {
+        boolean interrupted = false;
+        while (true) {
+            Segment segment;
+            long forcePosition;
+            synchronized (syncLock) {
+                while (forcing && durablePosition < position) {
+                    try {
+                        syncLock.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (durablePosition >= position) break;
+
+                forcing = true;
+                segment = currentSegment;
+                forcePosition = ((long) segment.id << 32) | segment.position;
+            }
+
+            try {
+                segment.buffer.force();
+            } finally {
+                synchronized (syncLock) {
+                    forcing = false;
+                    if (forcePosition > durablePosition) durablePosition = forcePosition;
+                    syncLock.notifyAll();
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    @Override
+    public void close() throws IOException {
+        Segment segment = currentSegment;
+        if (segment != null) segment.buffer.force();
+    }
+
+    static int recordBytes(int payloadLength) {
+        return RECORD_HEADER_BYTES + BODY_HEADER_BYTES + payloadLength;
+    }
+
+    static byte[] intPayload(int value) {
+        byte[] payload = new byte[4];
+        putInt(payload, 0, value);
+        return payload;
+    }
+
+    static byte[] expiringPayload(long expirationTime, byte[] payload) {
+        byte[] expiringPayload = new byte[8 + payload.length];
+        putInt(expiringPayload, 0, (int) (expirationTime >>> 32));
+        putInt(expiringPayload, 4, (int) expirationTime);
+        System.arraycopy(payload, 0, expiringPayload, 8, payload.length);
+        return expiringPayload;
+    }
+
+    private boolean hasCompleteCheckpoint(Segment segment) {
+        boolean[] checkpointEnd = new boolean[1];
+        this.readRecords(segment, (type, priority, body, position) -> {
+            if (position == 0 && type != CHECKPOINT_START) return false;
+            checkpointEnd[0] = type == CHECKPOINT_END;
+            return !checkpointEnd[0];
+        });
+        return checkpointEnd[0];
+    }
+
+    private int replay(Segment segment, RecordHandler recordHandler) {
+        return this.readRecords(segment, (type, priority, body, position) -> {
+            switch (type) {
+                case ENQUEUE:
+                    byte[] payload = new byte[body.length - BODY_HEADER_BYTES];
+                    System.arraycopy(body, BODY_HEADER_BYTES, payload, 0, payload.length);
+                    recordHandler.onEnqueue(priority, QueueItem.NO_EXPIRATION, payload);
+                    break;
+                case EXPIRING_ENQUEUE:
+                    long expirationTime = ((long) getInt(body, BODY_HEADER_BYTES) << 32)
+                            | (getInt(body, BODY_HEADER_BYTES + 4) & 0xFFFFFFFFL);
+                    byte[] expiringPayload = new byte[body.length - BODY_HEADER_BYTES - 8];
+                    System.arraycopy(body, BODY_HEADER_BYTES + 8, expiringPayload, 0, expiringPayload.length);
+                    recordHandler.onEnqueue(priority, expirationTime, expiringPayload);
+                    break;
+                case DEQUEUE:
+                    recordHandler.onDequeue(priority);
+                    break;
+                case EXPIRED:
+                    recordHandler.onExpired(priority, getInt(body, BODY_HEADER_BYTES));
+                    break;
+                case VISITED:
+                    recordHandler.onVisited(priority, getInt(body, BODY_HEADER_BYTES));
+                    break;
+                case DRAINED:
+                    recordHandler.onDrained(priority);
+                    break;
+                default:
+                    break;
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Reads the valid records of the segment until the reader stops or the first
+     * empty, incomplete or corrupted record. Returns the position after the last read record.
+     */
+    private int readRecords(Segment segment, RecordReader recordReader) {
+        int position = 0;
+        while (position + RECORD_HEADER_BYTES <= segment.size) {
+            int bodyLength = segment.buffer.getInt(position);
+            if (bodyLength < BODY_HEADER_BYTES || bodyLength > segment.size - position - RECORD_HEADER_BYTES) break;
+
+            byte[] body = new byte[bodyLength];
+            ((Buffer) segment.buffer).position(position + RECORD_HEADER_BYTES);
+            segment.buffer.get(body);
+            crc.reset();
+            crc.update(body, 0, bodyLength);
+            if ((int) crc.getValue() != segment.buffer.getInt(position + 4)) break;
+
+            boolean proceed = recordReader.onRecord(body[0], getInt(body, 1), body, position);
+            position += RECORD_HEADER_BYTES + bodyLength;
+            if (!proceed) break;
+        }
+        return position;
+    }
+
+    private List<Integer> listSegmentIds() throws IOException {
+        List<Integer> segmentIds = new ArrayList<>();
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path segment : segments) {
+                String fileName = segment.getFileName().toString();
+                segmentIds.add(Integer.valueOf(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(segmentIds);
+        return segmentIds;
+    }
+
+    private Path segmentPath(int segmentId) {
+        return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, segmentId, SEGMENT_SUFFIX));
+    }
+
+    private Segment createSegment(int segmentId, int size) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(this.segmentPath(segmentId).toFile(), "rw")) {
+            file.setLength(size);
+            file.getChannel().force(true);
+        }
+        return this.openSegment(segmentId);
+    }
+
+    private Segment openSegment(int segmentId) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(this.segmentPath(segmentId).toFile(), "rw")) {
+            FileChannel channel = file.getChannel();
+            int size = (int) Math.min(channel.size(), Integer.MAX_VALUE);
+            return new Segment(segmentId, size, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    private interface RecordReader {
+        boolean onRecord(byte type, int priority, byte[] body, int position);
+    }
+
+    /**
+     * Mapped segment file with the position of the next record.
+     * The mapping stays valid after the file is closed.
+     */
+    private static class Segment {
+        private final int id;
+        private final int size;
+        private final MappedByteBuffer buffer;
+        private volatile int position;
+
+        Segment(int id, int size, MappedByteBuffer buffer) {
+            this.id = id;
+            this.size = size;
+            this.buffer = buffer;
+        }
+    }
+}
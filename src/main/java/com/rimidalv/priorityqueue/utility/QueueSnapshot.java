@@ -0,0 +1,349 @@
+package com.rimidalv.priorityqueue.utility;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compact binary snapshot of the {@link CustomPriorityQueue}: the capacity settings,
+ * the items grouped by priority in the queue order, the delayed items with their remaining delays
+ * and the burst counters of the {@link BurstRatePolicy}.
+ * <pre>
+ * header:   int magic, int version, int maximumCapacity, int priorityRange,
+ *           byte burstPolicy, int burstSize, byte inDepthSearch
+ * lanes:    int laneCount, per lane: int priority, int itemCount,
+ *           per item: long expirationTime, int length, byte[] payload
+ * delayed:  int delayedCount, per item: int priority, long delayNanos, long expirationTime, int length, byte[] payload
+ * counters: int visitedCount, per counter: int priority, int timesVisited,
+ *           int drainedCount, per priority: int priority
+ * trailer:  int magic
+ * </pre>
+ * The lock of the queue is held only to copy the item references and the counters;
+ * the values are serialized and written after the lock is released.
+ * The restore links every lane into the queue at once instead of enqueuing item by item.
+ * The delayed items are restored with the delays they had left when the snapshot was taken, so the time
+ * between the snapshot and the restore does not count; a snapshot of the version 1 has no delayed items.
+ * The expiration times are wall clock times, so an item expires at the same time after the restore;
+ * the items of a snapshot of the version 1 or 2 never expire.
+ */
+public final class QueueSnapshot {
+    private static final int MAGIC = 0x43505153;
+    private static final int VERSION = 3;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private QueueSnapshot() {
+    }
+
+    /**
+     * Writes the snapshot of the queue to the channel.
+     * Returns the number of the written items, including the delayed items.
+     *
+     * @param customPriorityQueue
+     * @param channel
+     * @param payloadSerializer
+     * @param <T>
+     * @return int
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> int write(CustomPriorityQueue customPriorityQueue, WritableByteChannel channel,
+                                PayloadSerializer<T> payloadSerializer) throws IOException {
+        List<QueueItem> queueItems;
+        List<QueueItem> delayedItems = new ArrayList<>();
+        List<Long> delays = new ArrayList<>();
+        int maximumCapacity;
+        int priorityRange;
+        BurstRatePolicy burstRatePolicy;
+        Map<Integer, Integer> visitedPriorities = Collections.emptyMap();
+        int[] drainedPriorities = new int[0];
+        synchronized (customPriorityQueue) {
+            queueItems = customPriorityQueue.toList();
+            customPriorityQueue.copyDelayedItems(delayedItems, delays);
+            maximumCapacity = customPriorityQueue.getMaximumCapacity();
+            priorityRange = customPriorityQueue.getPriorityRange();
+            SchedulingPolicy schedulingPolicy = customPriorityQueue.getSchedulingPolicy();
+            burstRatePolicy = schedulingPolicy instanceof BurstRatePolicy ? (BurstRatePolicy) schedulingPolicy : null;
+            if (burstRatePolicy != null) {
+                visitedPriorities = new HashMap<>(burstRatePolicy.getVisitedPriorities());
+                drainedPriorities = burstRatePolicy.getDrainedPriorities();
+            }
+        }
+
+        ChannelWriter writer = new ChannelWriter(channel);
+        writer.putInt(MAGIC);
+        writer.putInt(VERSION);
+        writer.putInt(maximumCapacity);
+        writer.putInt(priorityRange);
+        writer.putByte(burstRatePolicy == null ? 0 : 1);
+        writer.putInt(burstRatePolicy == null ? 0 : burstRatePolicy.getBurstSize());
+        writer.putByte(burstRatePolicy != null && burstRatePolicy.isInDepthSearch() ? 1 : 0);
+
+        writer.putInt(countLanes(queueItems));
+        int laneStart = 0;
+        while (laneStart < queueItems.size()) {
+            int priority = queueItems.get(laneStart).getPriority();
+            int laneEnd = laneStart;
+            while (laneEnd < queueItems.size() && queueItems.get(laneEnd).getPriority() == priority) laneEnd++;
+
+            writer.putInt(priority);
+            writer.putInt(laneEnd - laneStart);
+            for (int i = laneStart; i < laneEnd; i++) {
+                byte[] payload = payloadSerializer.serialize((T) queueItems.get(i).getQueueItem());
+                writer.putLong(queueItems.get(i).getExpirationTime());
+                writer.putInt(payload.length);
+                writer.putBytes(payload);
+            }
+            laneStart = laneEnd;
+        }
+
+        writer.putInt(delayedItems.size());
+        for (int i = 0; i < delayedItems.size(); i++) {
+            byte[] payload = payloadSerializer.serialize((T) delayedItems.get(i).getQueueItem());
+            writer.putInt(delayedItems.get(i).getPriority());
+            writer.putLong(delays.get(i));
+            writer.putLong(delayedItems.get(i).getExpirationTime());
+            writer.putInt(payload.length);
+            writer.putBytes(payload);
+        }
+
+        writer.putInt(visitedPriorities.size());
+        for (Map.Entry<Integer, Integer> visitedPriority : visitedPriorities.entrySet()) {
+            writer.putInt(visitedPriority.getKey());
+            writer.putInt(visitedPriority.getValue());
+        }
+        writer.putInt(drainedPriorities.length);
+        for (int drainedPriority : drainedPriorities) {
+            writer.putInt(drainedPriority);
+        }
+        writer.putInt(MAGIC);
+        writer.flush();
+
+        return queueItems.size() + delayedItems.size();
+    }
+
+    /**
+     * Restores the queue of the snapshot with the capacity settings of the snapshot.
+     * The queue gets the burst rate policy of the snapshot with its counters,
+     * or the strict priority policy if the snapshot was taken with another policy.
+     *
+     * @param channel
+     * @param payloadSerializer
+     * @param <T>
+     * @return CustomPriorityQueue
+     * @throws IOException
+     */
+    public static <T> CustomPriorityQueue restore(ReadableByteChannel channel, PayloadSerializer<T> payloadSerializer) throws IOException {
+        return restore(channel, payloadSerializer, null);
+    }
+
+    /**
+     * Restores the queue of the snapshot with the capacity settings of the snapshot and the specified
+     * scheduling policy. The burst counters of the snapshot are restored if the policy is a burst rate policy.
+     * If the policy is null, the policy of the snapshot is restored.
+     *
+     * @param channel
+     * @param payloadSerializer
+     * @param schedulingPolicy
+     * @param <T>
+     * @return CustomPriorityQueue
+     * @throws IOException
+     */
+    public static <T> CustomPriorityQueue restore(ReadableByteChannel channel, PayloadSerializer<T> payloadSerializer,
+                                                  SchedulingPolicy schedulingPolicy) throws IOException {
+        ChannelReader reader = new ChannelReader(channel);
+        if (reader.getInt() != MAGIC) throw new StreamCorruptedException("Not a queue snapshot");
+        int version = reader.getInt();
+        if (version < 1 || version > VERSION) throw new StreamCorruptedException("Unsupported snapshot version: " + version);
+
+        int maximumCapacity = reader.getInt();
+        int priorityRange = reader.getInt();
+        boolean burstPolicy = reader.getByte() == 1;
+        int burstSize = reader.getInt();
+        boolean inDepthSearch = reader.getByte() == 1;
+        if (schedulingPolicy == null) {
+            schedulingPolicy = burstPolicy
+                    ? new BurstRatePolicy(burstSize, inDepthSearch, priorityRange)
+                    : new StrictPriorityPolicy();
+        }
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(maximumCapacity, priorityRange, schedulingPolicy);
+
+        int laneCount = reader.getInt();
+        List<QueueItem> queueItems = new ArrayList<>();
+        for (int lane = 0; lane < laneCount; lane++) {
+            int priority = reader.getInt();
+            int itemCount = reader.getInt();
+            queueItems.clear();
+            for (int i = 0; i < itemCount; i++) {
+                long expirationTime = version < 3 ? QueueItem.NO_EXPIRATION : reader.getLong();
+                queueItems.add(new QueueItem<>(priority, reader.getValue(payloadSerializer), expirationTime));
+            }
+            customPriorityQueue.appendPriorityRun(priority, queueItems);
+        }
+
+        int delayedCount = version == 1 ? 0 : reader.getInt();
+        for (int i = 0; i < delayedCount; i++) {
+            int priority = reader.getInt();
+            long delayNanos = reader.getLong();
+            long expirationTime = version < 3 ? QueueItem.NO_EXPIRATION : reader.getLong();
+            QueueItem<T> queueItem = new QueueItem<>(priority, reader.getValue(payloadSerializer), expirationTime);
+            if (!customPriorityQueue.enqueue(queueItem, delayNanos, TimeUnit.NANOSECONDS))
+                throw new IllegalStateException("Items do not fit the maximum capacity of the queue: " + maximumCapacity);
+        }
+
+        BurstRatePolicy burstRatePolicy =
+                schedulingPolicy instanceof BurstRatePolicy ? (BurstRatePolicy) schedulingPolicy : null;
+        int visitedCount = reader.getInt();
+        for (int i = 0; i < visitedCount; i++) {
+            int priority = reader.getInt();
+            int timesVisited = reader.getInt();
+            if (burstRatePolicy != null) burstRatePolicy.setVisitedPriority(priority, timesVisited);
+        }
+        int drainedCount = reader.getInt();
+        for (int i = 0; i < drainedCount; i++) {
+            int priority = reader.getInt();
+            if (burstRatePolicy != null) burstRatePolicy.addDrainedPriority(priority);
+        }
+        if (reader.getInt() != MAGIC) throw new StreamCorruptedException("Snapshot is truncated");
+
+        return customPriorityQueue;
+    }
+
+    private static int countLanes(List<QueueItem> queueItems) {
+        int lanes = 0;
+        for (int i = 0; i < queueItems.size(); i++) {
+            if (i == 0 || queueItems.get(i).getPriority() != queueItems.get(i - 1).getPriority()) lanes++;
+        }
+        return lanes;
+    }
+
+    /**
+     * Buffers the writes to the channel.
+     */
+    private static class ChannelWriter {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        ChannelWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void putByte(int value) throws IOException {
+            this.ensureRoom(1);
+            buffer.put((byte) value);
+        }
+
+        void putInt(int value) throws IOException {
+            this.ensureRoom(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            this.ensureRoom(8);
+            buffer.putLong(value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            if (bytes.length > buffer.remaining()) {
+                this.flush();
+                if (bytes.length > buffer.capacity()) {
+                    writeFully(ByteBuffer.wrap(bytes));
+                    return;
+                }
+            }
+            buffer.put(bytes);
+        }
+
+        void flush() throws IOException {
+            ((Buffer) buffer).flip();
+            writeFully(buffer);
+            ((Buffer) buffer).clear();
+        }
+
+        private void ensureRoom(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) this.flush();
+        }
+
+        private void writeFully(ByteBuffer source) throws IOException {
+            while (source.hasRemaining()) channel.write(source);
+        }
+    }
+
+    /**
+     * Buffers the reads from the channel.
+     */
+    private static class ChannelReader {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        ChannelReader(ReadableByteChannel channel) {
+            this.channel = channel;
+            ((Buffer) buffer).limit(0);
+        }
+
+        byte getByte() throws IOException {
+            this.require(1);
+            return buffer.get();
+        }
+
+        int getInt() throws IOException {
+            this.require(4);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            this.require(8);
+            return buffer.getLong();
+        }
+
+        /**
+         * Reads the payload length and lets the serializer read the value from the buffer.
+         * A payload larger than the buffer is read to a new array.
+         */
+        <T> T getValue(PayloadSerializer<T> payloadSerializer) throws IOException {
+            int length = this.getInt();
+            if (length < 0) throw new StreamCorruptedException("Negative payload length: " + length);
+            if (length > buffer.capacity()) return payloadSerializer.deserialize(this.getBytes(length));
+
+            this.require(length);
+            int limit = buffer.limit();
+            int end = buffer.position() + length;
+            ((Buffer) buffer).limit(end);
+            T value = payloadSerializer.deserialize(buffer, length);
+            ((Buffer) buffer).limit(limit);
+            ((Buffer) buffer).position(end);
+            return value;
+        }
+
+        private byte[] getBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            int copied = buffer.remaining();
+            buffer.get(bytes, 0, copied);
+            ByteBuffer target = ByteBuffer.wrap(bytes, copied, length - copied);
+            while (target.hasRemaining()) {
+                if (channel.read(target) < 0) throw new EOFException("Snapshot is truncated");
+            }
+            return bytes;
+        }
+
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return;
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) throw new EOFException("Snapshot is truncated");
+            }
+            ((Buffer) buffer).flip();
+        }
+    }
+}
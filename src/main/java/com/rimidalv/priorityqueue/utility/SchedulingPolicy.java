@@ -0,0 +1,84 @@
+package com.rimidalv.priorityqueue.utility;
+
+/**
+ * Policy which decides from which priority the queue dequeues next.
+ * A policy keeps its own state and must not be shared between queues.
+ * All the methods are called while the queue lock is held.
+ */
+public interface SchedulingPolicy {
+
+    /**
+     * Returns the priority of the next item to dequeue, or -1 if the queue is empty.
+     * The returned priority should have items, otherwise the dequeue returns null.
+     *
+     * @param queueView priorities currently available in the queue
+     * @return int
+     */
+    int nextPriority(QueueView queueView);
+
+    /**
+     * Returns the priority which the next call of {@link #nextPriority(QueueView)} would return,
+     * without changing the policy state. Used by the peek of the queue.
+     * The default implementation calls the next priority on a copy of the policy;
+     * the policies override it to avoid the copy.
+     *
+     * @param queueView priorities currently available in the queue
+     * @return int
+     */
+    default int peekPriority(QueueView queueView) {
+        return this.copy().nextPriority(queueView);
+    }
+
+    /**
+     * Called when the first item of a priority was inserted to the queue.
+     *
+     * @param priority
+     */
+    default void onPriorityAdded(int priority) {
+    }
+
+    /**
+     * Called when the last item of a priority was removed from the queue.
+     *
+     * @param priority
+     */
+    default void onPriorityRemoved(int priority) {
+    }
+
+    /**
+     * Returns an independent copy of the policy with the same state.
+     * Used by the default {@link #peekPriority(QueueView)}.
+     *
+     * @return SchedulingPolicy
+     */
+    SchedulingPolicy copy();
+
+    /**
+     * Read-only view of the priorities available in the queue.
+     */
+    interface QueueView {
+
+        /**
+         * Returns the highest available priority (the lowest number), or -1 if the queue is empty.
+         *
+         * @return int
+         */
+        int getHighestPriority();
+
+        /**
+         * Returns the next available priority after the specified one, or -1 if there is none.
+         *
+         * @param priority
+         * @return int
+         */
+        int getNextPriority(int priority);
+
+        /**
+         * Checks if the queue has items of the specified priority.
+         *
+         * @param priority
+         * @return boolean
+         */
+        boolean hasPriority(int priority);
+    }
+}
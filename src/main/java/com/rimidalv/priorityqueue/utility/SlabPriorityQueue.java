@@ -0,0 +1,266 @@
+package com.rimidalv.priorityqueue.utility;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Allocation free mode of the priority queue. The items are kept in a slab of preallocated
+ * slots sized from the maximum capacity; the slots of a priority are linked by their int
+ * indexes and the unused slots are kept in a free list. The first and the last slot of every
+ * priority are kept in arrays indexed by priority, so the priorities are bounded by the priority range.
+ * Enqueue and dequeue do not allocate, so the queue does not produce garbage in the steady state.
+ * Dequeue order is decided by the {@link SchedulingPolicy}, the same as in {@link CustomPriorityQueue}.
+ */
+public class SlabPriorityQueue {
+    private static final int NONE = -1;
+
+    private final QueueItem[] items;
+    private final int[] nextSlots;
+    private final int[] previousSlots;
+    private int freeSlot;
+
+    private final int[] firstSlots;
+    private final int[] lastSlots;
+    private final PriorityBitmap priorityIndex;
+
+    private final SchedulingPolicy schedulingPolicy;
+    private final SchedulingPolicy.QueueView queueView = new SlabQueueView();
+    private QueueEventListener eventListener = QueueEventListener.NO_OP;
+
+    private int capacity;
+    private final int maximumCapacity;
+
+    public SlabPriorityQueue(int maximumCapacity, int priorityRange, boolean inDepthSearch) {
+        this(maximumCapacity, priorityRange,
+                new BurstRatePolicy(BurstRatePolicy.DEFAULT_BURST_SIZE, inDepthSearch, priorityRange));
+    }
+
+    /**
+     * Creates the queue with all the slots for the maximum capacity and the priority range preallocated.
+     *
+     * @param maximumCapacity
+     * @param priorityRange
+     * @param schedulingPolicy
+     */
+    public SlabPriorityQueue(int maximumCapacity, int priorityRange, SchedulingPolicy schedulingPolicy) {
+        if (maximumCapacity < 1)
+            throw new IllegalArgumentException("Maximum capacity must be positive: " + maximumCapacity);
+        if (priorityRange < 1 || priorityRange > PriorityBitmap.MAX_PRIORITY + 1)
+            throw new IllegalArgumentException("Priority range must be in range [1, " + (PriorityBitmap.MAX_PRIORITY + 1) + "]: " + priorityRange);
+        if (schedulingPolicy == null) throw new NullPointerException("Scheduling policy must not be null");
+
+        this.maximumCapacity = maximumCapacity;
+        this.items = new QueueItem[maximumCapacity];
+        this.nextSlots = new int[maximumCapacity];
+        this.previousSlots = new int[maximumCapacity];
+        for (int slot = 0; slot < maximumCapacity; slot++) {
+            nextSlots[slot] = slot + 1 < maximumCapacity ? slot + 1 : NONE;
+        }
+        this.freeSlot = 0;
+
+        this.firstSlots = new int[priorityRange];
+        this.lastSlots = new int[priorityRange];
+        Arrays.fill(firstSlots, NONE);
+        Arrays.fill(lastSlots, NONE);
+        this.priorityIndex = new PriorityBitmap(priorityRange);
+        this.schedulingPolicy = schedulingPolicy;
+    }
+
+    /**
+     * Method to enqueue an item at the end of its priority, in a slot taken from the free list.
+     * Returns false if the queue is out of capacity, otherwise true.
+     *
+     * @param newItem
+     * @return boolean
+     */
+    public synchronized boolean enqueue(QueueItem newItem) {
+        int priority = newItem.getPriority();
+        this.checkPriority(priority);
+        if (freeSlot == NONE) {
+            eventListener.onReject(priority);
+            return false;
+        }
+
+        int slot = freeSlot;
+        freeSlot = nextSlots[slot];
+        items[slot] = newItem;
+        nextSlots[slot] = NONE;
+
+        int lastSlot = lastSlots[priority];
+        previousSlots[slot] = lastSlot;
+        if (lastSlot == NONE) {
+            firstSlots[priority] = slot;
+            priorityIndex.set(priority);
+            schedulingPolicy.onPriorityAdded(priority);
+        } else {
+            nextSlots[lastSlot] = slot;
+        }
+        lastSlots[priority] = slot;
+
+        capacity++;
+        eventListener.onEnqueue(priority, capacity);
+        return true;
+    }
+
+    /**
+     * Method to dequeue the first item of the priority chosen by the scheduling policy
+     * and return its slot to the free list.
+     * Returns dequeued queue item if exists, otherwise null.
+     *
+     * @return QueueItem
+     */
+    public synchronized QueueItem dequeue() {
+        if (capacity == 0) return null;
+
+        int priority = schedulingPolicy.nextPriority(queueView);
+        if (priority < 0 || priority >= firstSlots.length || firstSlots[priority] == NONE) return null;
+
+        int slot = firstSlots[priority];
+        QueueItem queueItem = items[slot];
+        this.unlink(priority, slot);
+        eventListener.onDequeue(priority, capacity);
+        return queueItem;
+    }
+
+    /**
+     * Method to dequeue up to the specified number of items and add them to the collection.
+     * Returns the number of the transferred items.
+     *
+     * @param collection
+     * @param maxElements
+     * @return int
+     */
+    public synchronized int drainTo(Collection<? super QueueItem> collection, int maxElements) {
+        int drained = 0;
+        while (drained < maxElements && capacity > 0) {
+            QueueItem queueItem = this.dequeue();
+            if (queueItem != null) {
+                collection.add(queueItem);
+                drained++;
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Method removes the first occurrence of the specified item from the queue.
+     * Only the slots of the item priority are visited.
+     * Returns true if the item was removed, otherwise false.
+     *
+     * @param queueItem
+     * @return boolean
+     */
+    public synchronized boolean remove(QueueItem queueItem) {
+        if (queueItem == null) return false;
+        int priority = queueItem.getPriority();
+        if (priority < 0 || priority >= firstSlots.length) return false;
+
+        for (int slot = firstSlots[priority]; slot != NONE; slot = nextSlots[slot]) {
+            if (queueItem.equals(items[slot])) {
+                this.unlink(priority, slot);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method returns the items of the queue from the highest priority to the lowest.
+     *
+     * @return List<QueueItem>
+     */
+    public synchronized List<QueueItem> toList() {
+        List<QueueItem> queueItems = new ArrayList<>(capacity);
+        for (int priority = priorityIndex.nextSetBit(0); priority != NONE; priority = priorityIndex.nextSetBit(priority + 1)) {
+            for (int slot = firstSlots[priority]; slot != NONE; slot = nextSlots[slot]) {
+                queueItems.add(items[slot]);
+            }
+        }
+        return queueItems;
+    }
+
+    /**
+     * Sets the listener of the queue events. The default listener does nothing.
+     *
+     * @param eventListener
+     */
+    public synchronized void setQueueEventListener(QueueEventListener eventListener) {
+        this.eventListener = eventListener == null ? QueueEventListener.NO_OP : eventListener;
+    }
+
+    public synchronized int size() {
+        return capacity;
+    }
+
+    public synchronized boolean isEmpty() {
+        return capacity == 0;
+    }
+
+    public synchronized boolean hasFreeCapacity() {
+        return freeSlot != NONE;
+    }
+
+    public int getMaximumCapacity() {
+        return maximumCapacity;
+    }
+
+    /**
+     * Methods unlinks the slot from its priority, clears it and returns it to the free list.
+     *
+     * @param priority
+     * @param slot
+     */
+    private void unlink(int priority, int slot) {
+        int previousSlot = previousSlots[slot];
+        int nextSlot = nextSlots[slot];
+        if (previousSlot == NONE)
+            firstSlots[priority] = nextSlot;
+        else
+            nextSlots[previousSlot] = nextSlot;
+        if (nextSlot == NONE)
+            lastSlots[priority] = previousSlot;
+        else
+            previousSlots[nextSlot] = previousSlot;
+
+        items[slot] = null;
+        nextSlots[slot] = freeSlot;
+        freeSlot = slot;
+        capacity--;
+
+        if (firstSlots[priority] == NONE) {
+            priorityIndex.clear(priority);
+            schedulingPolicy.onPriorityRemoved(priority);
+        }
+    }
+
+    private void checkPriority(int priority) {
+        if (priority < 0 || priority >= firstSlots.length)
+            throw new IllegalArgumentException("Priority must be in range [0, " + (firstSlots.length - 1) + "]: " + priority);
+    }
+
+    /**
+     * View of the available priorities given to the scheduling policy.
+     */
+    private class SlabQueueView implements SchedulingPolicy.QueueView {
+
+        @Override
+        public int getHighestPriority() {
+            return priorityIndex.nextSetBit(0);
+        }
+
+        @Override
+        public int getNextPriority(int priority) {
+            if (priority >= PriorityBitmap.MAX_PRIORITY) return NONE;
+            return priorityIndex.nextSetBit(priority + 1);
+        }
+
+        @Override
+        public boolean hasPriority(int priority) {
+            return priorityIndex.get(priority);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.rimidalv.priorityqueue.utility;
+
+/**
+ * Scheduling policy which always dequeues the highest available priority.
+ * Gives the lowest latency to the high priorities and can starve the low ones.
+ */
+public class StrictPriorityPolicy implements SchedulingPolicy {
+
+    @Override
+    public int nextPriority(QueueView queueView) {
+        return queueView.getHighestPriority();
+    }
+
+    @Override
+    public int peekPriority(QueueView queueView) {
+        return queueView.getHighestPriority();
+    }
+
+    @Override
+    public SchedulingPolicy copy() {
+        return this;
+    }
+}
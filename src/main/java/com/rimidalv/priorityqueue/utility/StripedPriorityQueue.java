@@ -0,0 +1,181 @@
+package com.rimidalv.priorityqueue.utility;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent mode of the priority queue. Every priority level is kept in its own lane
+ * guarded by its own lock, so producers of different priorities do not block each other.
+ * Only the burst rate state (the {@link BurstRatePolicy}) is shared between consumers and
+ * is guarded by the scheduler lock; producers never touch it.
+ * Dequeue order is the same as in {@link CustomPriorityQueue}.
+ */
+public class StripedPriorityQueue {
+    private final ConcurrentSkipListMap<Integer, Lane> lanes;
+    private final AtomicInteger capacity;
+    private final Object schedulerLock = new Object();
+    private final BurstRatePolicy burstRatePolicy;
+    private final SchedulingPolicy.QueueView laneView = new LaneView();
+
+    private final int maximumCapacity;
+
+    public StripedPriorityQueue(int maximumCapacity, boolean inDepthSearch) {
+        this(maximumCapacity, BurstRatePolicy.DEFAULT_BURST_SIZE, inDepthSearch);
+    }
+
+    public StripedPriorityQueue(int maximumCapacity, int burstSize, boolean inDepthSearch) {
+        this.maximumCapacity = maximumCapacity;
+        this.lanes = new ConcurrentSkipListMap<>();
+        this.capacity = new AtomicInteger();
+        this.burstRatePolicy = new BurstRatePolicy(burstSize, inDepthSearch, 0);
+    }
+
+    /**
+     * Method to enqueue an item at the end of its priority lane.
+     * Only the lane of the item priority is locked.
+     * Returns false if the queue is out of capacity, otherwise true.
+     *
+     * @param newItem
+     * @return boolean
+     */
+    public boolean enqueue(QueueItem newItem) {
+        PriorityBitmap.checkPriority(newItem.getPriority());
+        if (!this.reserveCapacity()) return false;
+
+        while (true) {
+            Lane lane = lanes.computeIfAbsent(newItem.getPriority(), priority -> new Lane());
+            lane.lock.lock();
+            try {
+                if (!lane.retired) {
+                    lane.items.addLast(newItem);
+                    lane.size++;
+                    return true;
+                }
+            } finally {
+                lane.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Method to dequeue the next item with respect of the burst rate.
+     * When the last item of a lane is dequeued, the lane is retired and the policy
+     * is told that the priority was removed, the same as in {@link CustomPriorityQueue}.
+     * Returns dequeued queue item if exists, otherwise null.
+     *
+     * @return QueueItem
+     */
+    public QueueItem dequeue() {
+        synchronized (schedulerLock) {
+            if (this.isEmpty()) return null;
+
+            int priority = burstRatePolicy.nextPriority(laneView);
+            Lane lane = lanes.get(priority);
+            if (lane == null) return null;
+
+            lane.lock.lock();
+            try {
+                QueueItem queueItem = lane.items.pollFirst();
+                if (queueItem != null) lane.size--;
+                if (lane.items.isEmpty()) {
+                    lane.retired = true;
+                    lanes.remove(priority, lane);
+                    burstRatePolicy.onPriorityRemoved(priority);
+                }
+                if (queueItem != null) capacity.decrementAndGet();
+                return queueItem;
+            } finally {
+                lane.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Method checks if the queue has a free space to put a new element.
+     *
+     * @return boolean
+     */
+    public boolean hasFreeCapacity() {
+        return capacity.get() < maximumCapacity;
+    }
+
+    /**
+     * Methods checks if the queue contains an element.
+     *
+     * @return boolean
+     */
+    public boolean isEmpty() {
+        return capacity.get() == 0;
+    }
+
+    /**
+     * Method returns the number of the elements in the queue.
+     *
+     * @return int
+     */
+    public int size() {
+        return capacity.get();
+    }
+
+    /**
+     * Returns the set of the visited priorities.
+     * @return
+     */
+    Map<Integer, Integer> getVisitedPrioritesList() {
+        return burstRatePolicy.getVisitedPriorities();
+    }
+
+    private boolean reserveCapacity() {
+        int current;
+        do {
+            current = capacity.get();
+            if (current >= maximumCapacity) return false;
+        } while (!capacity.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * View of the non-empty lanes given to the burst rate policy.
+     * A lane created by a producer which did not add its item yet is skipped.
+     * Used holding the scheduler lock.
+     */
+    private class LaneView implements SchedulingPolicy.QueueView {
+
+        @Override
+        public int getHighestPriority() {
+            Map.Entry<Integer, Lane> lane = lanes.firstEntry();
+            while (lane != null && lane.getValue().size == 0) lane = lanes.higherEntry(lane.getKey());
+            return lane == null ? -1 : lane.getKey();
+        }
+
+        @Override
+        public int getNextPriority(int priority) {
+            Map.Entry<Integer, Lane> lane = lanes.higherEntry(priority);
+            while (lane != null && lane.getValue().size == 0) lane = lanes.higherEntry(lane.getKey());
+            return lane == null ? -1 : lane.getKey();
+        }
+
+        @Override
+        public boolean hasPriority(int priority) {
+            Lane lane = lanes.get(priority);
+            return lane != null && lane.size > 0;
+        }
+    }
+
+    /**
+     * Lane of a single priority. A lane is retired and removed from the lanes map
+     * when its last item is dequeued; producers holding a retired lane retry with a new one.
+     * The size is written under the lane lock and read by the consumers without it.
+     */
+    private static class Lane {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<QueueItem> items = new ArrayDeque<>();
+        private volatile int size;
+        private boolean retired;
+    }
+}
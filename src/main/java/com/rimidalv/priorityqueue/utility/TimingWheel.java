@@ -0,0 +1,202 @@
+package com.rimidalv.priorityqueue.utility;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel of the delayed items. Every level has 64 slots and a slot of
+ * the level L covers 64^L ticks. A timer is put to the slot of the highest level on which
+ * its deadline tick differs from the current tick, so the insertion is O(1).
+ * When the time reaches a slot of an upper level, its timers are moved to the lower levels,
+ * and the timers of the reached slot of the first level expire. Every timer is moved at most
+ * once per level, and the empty slots are skipped by the occupancy bits of the levels,
+ * so the time passing without timers costs nothing.
+ */
+final class TimingWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = (Long.SIZE + SLOT_BITS - 1) / SLOT_BITS;
+
+    private final long tickNanos;
+    private final long startTime;
+    private final Timer[][] firstTimers = new Timer[LEVELS][];
+    private final Timer[][] lastTimers = new Timer[LEVELS][];
+    private final long[] occupiedSlots = new long[LEVELS];
+    private long currentTick;
+    private int size;
+
+    /**
+     * Creates the wheel with the tick length, starting at the specified {@link System#nanoTime()} time.
+     *
+     * @param tickNanos
+     * @param startTime
+     */
+    TimingWheel(long tickNanos, long startTime) {
+        if (tickNanos <= 0) throw new IllegalArgumentException("Tick must be positive: " + tickNanos);
+        this.tickNanos = tickNanos;
+        this.startTime = startTime;
+    }
+
+    /**
+     * Adds the item which expires after the delay from now. The deadline is rounded up
+     * to the next tick, so the item never expires early.
+     *
+     * @param queueItem
+     * @param now
+     * @param delayNanos
+     */
+    void add(QueueItem queueItem, long now, long delayNanos) {
+        long elapsed = now - startTime;
+        long delay = Math.min(delayNanos, Long.MAX_VALUE - elapsed - tickNanos);
+        long deadlineTick = Math.max((elapsed + delay + tickNanos - 1) / tickNanos, currentTick + 1);
+        this.schedule(new Timer(queueItem, deadlineTick));
+        size++;
+    }
+
+    /**
+     * Moves the time to now and adds the expired items to the collection,
+     * in the order of their deadline ticks.
+     * Returns the number of the expired items.
+     *
+     * @param now
+     * @param expiredItems
+     * @return int
+     */
+    int advance(long now, Collection<? super QueueItem> expiredItems) {
+        long targetTick = (now - startTime) / tickNanos;
+        int expired = 0;
+        while (size > 0) {
+            long nextTick = this.nextEventTick();
+            if (nextTick > targetTick) break;
+            currentTick = nextTick;
+
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) continue;
+                for (Timer timer = this.takeSlot(level, this.slot(currentTick, level)); timer != null; ) {
+                    Timer next = timer.next;
+                    timer.next = null;
+                    if (timer.deadlineTick == currentTick) {
+                        expiredItems.add(timer.queueItem);
+                        expired++;
+                    } else {
+                        this.schedule(timer);
+                    }
+                    timer = next;
+                }
+            }
+            for (Timer timer = this.takeSlot(0, this.slot(currentTick, 0)); timer != null; timer = timer.next) {
+                expiredItems.add(timer.queueItem);
+                expired++;
+            }
+        }
+        size -= expired;
+        if (targetTick > currentTick) currentTick = targetTick;
+        return expired;
+    }
+
+    /**
+     * Returns the number of the timers which did not expire.
+     *
+     * @return int
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the time from now to the next tick at which a slot is reached, when timers expire
+     * or are moved to a lower level, or Long.MAX_VALUE if the wheel has no timers.
+     * Returns 0 if the slot is already due and the wheel must be advanced.
+     *
+     * @param now
+     * @return long
+     */
+    long nextEventDelay(long now) {
+        if (size == 0) return Long.MAX_VALUE;
+        return this.delayTo(this.nextEventTick(), now);
+    }
+
+    /**
+     * Adds the items of the timers and their remaining delays from now to the lists, without removing them.
+     *
+     * @param now
+     * @param queueItems
+     * @param delays
+     */
+    void copyTimers(long now, List<QueueItem> queueItems, List<Long> delays) {
+        for (int level = 0; level < LEVELS; level++) {
+            for (long slots = occupiedSlots[level]; slots != 0; slots &= slots - 1) {
+                for (Timer timer = firstTimers[level][Long.numberOfTrailingZeros(slots)]; timer != null; timer = timer.next) {
+                    queueItems.add(timer.queueItem);
+                    delays.add(this.delayTo(timer.deadlineTick, now));
+                }
+            }
+        }
+    }
+
+    private long delayTo(long tick, long now) {
+        if (tick >= Long.MAX_VALUE / tickNanos) return Long.MAX_VALUE;
+        return Math.max(0, tick * tickNanos - (now - startTime));
+    }
+
+    private void schedule(Timer timer) {
+        int level = (Long.SIZE - 1 - Long.numberOfLeadingZeros(timer.deadlineTick ^ currentTick)) / SLOT_BITS;
+        int slot = this.slot(timer.deadlineTick, level);
+        if (firstTimers[level] == null) {
+            firstTimers[level] = new Timer[SLOTS];
+            lastTimers[level] = new Timer[SLOTS];
+        }
+        if (firstTimers[level][slot] == null) {
+            firstTimers[level][slot] = timer;
+            occupiedSlots[level] |= 1L << slot;
+        } else {
+            lastTimers[level][slot].next = timer;
+        }
+        lastTimers[level][slot] = timer;
+    }
+
+    private Timer takeSlot(int level, int slot) {
+        if ((occupiedSlots[level] & (1L << slot)) == 0) return null;
+        Timer timer = firstTimers[level][slot];
+        firstTimers[level][slot] = null;
+        lastTimers[level][slot] = null;
+        occupiedSlots[level] &= ~(1L << slot);
+        return timer;
+    }
+
+    /**
+     * Returns the first tick after the current one at which a slot is reached, which is the first
+     * occupied slot after the current position of the lowest level with one. The timers of an upper
+     * level are always after the current position of their level, since they are moved down when
+     * the position reaches them.
+     */
+    private long nextEventTick() {
+        for (int level = 0; level < LEVELS; level++) {
+            long laterSlots = occupiedSlots[level] & ~((2L << this.slot(currentTick, level)) - 1);
+            if (laterSlots != 0) {
+                int shift = SLOT_BITS * (level + 1);
+                long upperTicks = shift >= Long.SIZE ? 0 : (currentTick >>> shift) << shift;
+                return upperTicks | ((long) Long.numberOfTrailingZeros(laterSlots) << (SLOT_BITS * level));
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private int slot(long tick, int level) {
+        return (int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK;
+    }
+
+    private static final class Timer {
+        private final QueueItem queueItem;
+        private final long deadlineTick;
+        private Timer next;
+
+        Timer(QueueItem queueItem, long deadlineTick) {
+            this.queueItem = queueItem;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
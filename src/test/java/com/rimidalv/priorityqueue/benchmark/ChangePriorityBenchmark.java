@@ -0,0 +1,50 @@
+package com.rimidalv.priorityqueue.benchmark;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import com.rimidalv.priorityqueue.utility.QueueHandle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded reprioritization of the queued items at a steady depth.
+ * Every operation moves the next item in rotation to the next priority in rotation,
+ * so the cost shows whether the list is walked.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class ChangePriorityBenchmark {
+
+    @Param({"10", "1000"})
+    private int distinctPriorities;
+
+    @Param({"1000", "1000000"})
+    private int depth;
+
+    private CustomPriorityQueue customPriorityQueue;
+    private QueueHandle[] queueHandles;
+    private int nextHandle;
+    private int nextPriority;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        customPriorityQueue = new CustomPriorityQueue(depth, true, distinctPriorities);
+        queueHandles = new QueueHandle[depth];
+        for (int i = 0; i < depth; i++) {
+            queueHandles[i] = customPriorityQueue.enqueue(new QueueItem<>(i % distinctPriorities, i));
+        }
+    }
+
+    @Benchmark
+    public boolean changePriority() {
+        QueueHandle queueHandle = queueHandles[nextHandle];
+        nextHandle = (nextHandle + 1) % queueHandles.length;
+        nextPriority = (nextPriority + 7) % distinctPriorities;
+        return customPriorityQueue.changePriority(queueHandle, nextPriority);
+    }
+}
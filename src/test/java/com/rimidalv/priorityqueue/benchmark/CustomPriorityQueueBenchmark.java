@@ -0,0 +1,66 @@
+package com.rimidalv.priorityqueue.benchmark;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded enqueue and dequeue of the queue at a steady depth.
+ * Every operation enqueues the next priority in rotation and dequeues one item,
+ * so the depth stays the same during the measurement.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class CustomPriorityQueueBenchmark {
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    private int distinctPriorities;
+
+    @Param({"10", "1000", "100000", "10000000"})
+    private int depth;
+
+    @Param({"true", "false"})
+    private boolean inDepthSearch;
+
+    @Param({"false", "true"})
+    private boolean densePriorities;
+
+    private CustomPriorityQueue customPriorityQueue;
+    private QueueItem[] queueItems;
+    private int nextPriority;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        customPriorityQueue = new CustomPriorityQueue(depth + 1, inDepthSearch, densePriorities ? distinctPriorities : 0);
+        queueItems = new QueueItem[distinctPriorities];
+        for (int priority = 0; priority < distinctPriorities; priority++) {
+            queueItems[priority] = new QueueItem<>(priority, priority);
+        }
+        for (int i = 0; i < depth; i++) {
+            customPriorityQueue.enqueue(this.nextItem());
+        }
+    }
+
+    @Benchmark
+    public QueueItem enqueueAndDequeue() {
+        customPriorityQueue.enqueue(this.nextItem());
+
+        QueueItem queueItem = customPriorityQueue.dequeue();
+        while (queueItem == null) {
+            queueItem = customPriorityQueue.dequeue();
+        }
+        return queueItem;
+    }
+
+    private QueueItem nextItem() {
+        QueueItem queueItem = queueItems[nextPriority];
+        nextPriority = (nextPriority + 1) % distinctPriorities;
+        return queueItem;
+    }
+}
@@ -0,0 +1,86 @@
+package com.rimidalv.priorityqueue.benchmark;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of adding a delayed item with millions of pending timers:
+ * the timing wheel of the queue against the binary heap of {@link DelayQueue}.
+ * Every iteration adds one batch of items, with the delays between one and two hours,
+ * so no item expires and the pending set keeps its size between the iterations.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = DelayedEnqueueBenchmark.BATCH_SIZE)
+@Measurement(iterations = 10, batchSize = DelayedEnqueueBenchmark.BATCH_SIZE)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class DelayedEnqueueBenchmark {
+    static final int BATCH_SIZE = 1000000;
+    private static final long MINIMUM_DELAY = TimeUnit.HOURS.toNanos(1);
+
+    @Param({"wheel", "delayQueue"})
+    private String mode;
+
+    @Param({"1000", "4000000"})
+    private int pending;
+
+    private CustomPriorityQueue customPriorityQueue;
+    private DelayQueue<DelayedItem> delayQueue;
+    private QueueItem<Integer> queueItem;
+    private long seed;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queueItem = new QueueItem<>(1, 0);
+        seed = 42;
+        customPriorityQueue = null;
+        delayQueue = null;
+        if (mode.equals("wheel")) {
+            customPriorityQueue = new CustomPriorityQueue(Integer.MAX_VALUE, true, 10);
+        } else {
+            delayQueue = new DelayQueue<>();
+        }
+        for (int i = 0; i < pending; i++) {
+            this.enqueueDelayed();
+        }
+    }
+
+    @Benchmark
+    public void enqueueDelayed() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        long delay = MINIMUM_DELAY + (seed >>> 1) % MINIMUM_DELAY;
+        if (customPriorityQueue != null) {
+            customPriorityQueue.enqueue(queueItem, delay, TimeUnit.NANOSECONDS);
+        } else {
+            delayQueue.offer(new DelayedItem(queueItem, System.nanoTime() + delay));
+        }
+    }
+
+    private static final class DelayedItem implements Delayed {
+        private final QueueItem queueItem;
+        private final long deadline;
+
+        DelayedItem(QueueItem queueItem, long deadline) {
+            this.queueItem = queueItem;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadline, ((DelayedItem) other).deadline);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.rimidalv.priorityqueue.benchmark;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of taking millions of expired delayed items: the timing wheel of the queue,
+ * which moves them to the priority runs in batches, against the heap removal of {@link DelayQueue}.
+ * The items are added with the delays below one millisecond and expire before the measurement,
+ * so the score is the time to dequeue all of them.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class DelayedExpiryBenchmark {
+    private static final long MAXIMUM_DELAY = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Param({"wheel", "delayQueue"})
+    private String mode;
+
+    @Param({"1000000", "4000000"})
+    private int pending;
+
+    private CustomPriorityQueue customPriorityQueue;
+    private DelayQueue<DelayedItem> delayQueue;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws InterruptedException {
+        QueueItem<Integer> queueItem = new QueueItem<>(1, 0);
+        long seed = 42;
+        customPriorityQueue = null;
+        delayQueue = null;
+        if (mode.equals("wheel")) {
+            customPriorityQueue = new CustomPriorityQueue(pending, true, 10);
+        } else {
+            delayQueue = new DelayQueue<>();
+        }
+        for (int i = 0; i < pending; i++) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 7;
+            seed ^= seed << 17;
+            long delay = 1 + (seed >>> 1) % MAXIMUM_DELAY;
+            if (customPriorityQueue != null) {
+                customPriorityQueue.enqueue(queueItem, delay, TimeUnit.NANOSECONDS);
+            } else {
+                delayQueue.offer(new DelayedItem(queueItem, System.nanoTime() + delay));
+            }
+        }
+        Thread.sleep(2);
+    }
+
+    @Benchmark
+    public int dequeueExpired() {
+        int dequeued = 0;
+        if (customPriorityQueue != null) {
+            while (customPriorityQueue.dequeue() != null) dequeued++;
+        } else {
+            while (delayQueue.poll() != null) dequeued++;
+        }
+        return dequeued;
+    }
+
+    private static final class DelayedItem implements Delayed {
+        private final QueueItem queueItem;
+        private final long deadline;
+
+        DelayedItem(QueueItem queueItem, long deadline) {
+            this.queueItem = queueItem;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadline, ((DelayedItem) other).deadline);
+        }
+    }
+}
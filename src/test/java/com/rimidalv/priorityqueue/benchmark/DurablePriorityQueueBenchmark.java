@@ -0,0 +1,86 @@
+package com.rimidalv.priorityqueue.benchmark;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import com.rimidalv.priorityqueue.utility.DurablePriorityQueue;
+import com.rimidalv.priorityqueue.utility.PayloadSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Enqueue and dequeue of the in-memory queue and of the durable queue without a force,
+ * with the default force window and with the sync on commit.
+ * Run with -t to see the concurrent producers share one force of the journal.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DurablePriorityQueueBenchmark {
+    private static final PayloadSerializer<String> STRING_SERIALIZER = PayloadSerializer.of(
+            value -> value.getBytes(StandardCharsets.UTF_8), payload -> new String(payload, StandardCharsets.UTF_8));
+
+    @Param({"memory", "async", "window", "sync"})
+    private String mode;
+
+    private Path directory;
+    private CustomPriorityQueue customPriorityQueue;
+    private DurablePriorityQueue<String> durablePriorityQueue;
+    private QueueItem<String>[] queueItems;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        customPriorityQueue = new CustomPriorityQueue(100_000, true);
+        if (!"memory".equals(mode)) {
+            directory = Files.createTempDirectory("durable-priority-queue");
+            durablePriorityQueue = "window".equals(mode)
+                    ? new DurablePriorityQueue<>(directory, customPriorityQueue, STRING_SERIALIZER)
+                    : new DurablePriorityQueue<>(directory, customPriorityQueue, STRING_SERIALIZER,
+                            DurablePriorityQueue.DEFAULT_SEGMENT_SIZE, "sync".equals(mode));
+        }
+        queueItems = new QueueItem[10];
+        for (int priority = 0; priority < queueItems.length; priority++) {
+            queueItems[priority] = new QueueItem<>(priority, "Payload of priority " + priority);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (durablePriorityQueue == null) return;
+        durablePriorityQueue.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public QueueItem enqueueAndDequeue(ThreadState threadState) {
+        QueueItem<String> queueItem = queueItems[threadState.nextPriority()];
+        if (durablePriorityQueue == null) {
+            customPriorityQueue.enqueue(queueItem);
+            return customPriorityQueue.dequeue();
+        }
+        durablePriorityQueue.enqueue(queueItem);
+        return durablePriorityQueue.dequeue();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private int nextPriority;
+
+        int nextPriority() {
+            nextPriority = (nextPriority + 1) % 10;
+            return nextPriority;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.rimidalv.priorityqueue.benchmark;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import com.rimidalv.priorityqueue.service.QueueService;
+import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Producers and consumers working on the same queue service.
+ * The number of producer and consumer threads is set with -tg, e.g. -tg 1,4 or -tg 4,1.
+ * Consumers wait at most a millisecond, so the iteration can end with an empty queue.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class QueueServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Service {
+        @Param({"1", "10", "100", "1000", "10000"})
+        private int distinctPriorities;
+
+        @Param({"true", "false"})
+        private boolean inDepthSearch;
+
+        private QueueService queueService;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            QueueService.deleteQueueService();
+            queueService = QueueService.getInstance(new CustomPriorityQueue(Integer.MAX_VALUE, inDepthSearch));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        private QueueItem[] queueItems;
+
+        @Setup(Level.Trial)
+        public void setUp(Service service, ThreadParams threadParams) {
+            queueItems = new QueueItem[service.distinctPriorities];
+            for (int priority = 0; priority < queueItems.length; priority++) {
+                queueItems[priority] = new QueueItem<>(priority, threadParams.getThreadIndex());
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("producerConsumer")
+    public void enqueue(Service service, Producer producer) {
+        int priority = ThreadLocalRandom.current().nextInt(producer.queueItems.length);
+        service.queueService.enqueue(producer.queueItems[priority]);
+    }
+
+    @Benchmark
+    @Group("producerConsumer")
+    public QueueItem dequeue(Service service) throws InterruptedException {
+        return service.queueService.dequeue(1, TimeUnit.MILLISECONDS);
+    }
+}
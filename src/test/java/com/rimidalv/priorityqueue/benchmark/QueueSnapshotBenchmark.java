@@ -0,0 +1,91 @@
+package com.rimidalv.priorityqueue.benchmark;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import com.rimidalv.priorityqueue.utility.PayloadSerializer;
+import com.rimidalv.priorityqueue.utility.QueueSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Restore of a snapshot file compared to enqueuing the same items one by one,
+ * and the write of the snapshot. Every invocation handles the whole queue.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class QueueSnapshotBenchmark {
+    private static final PayloadSerializer<Integer> INT_SERIALIZER = new PayloadSerializer<Integer>() {
+        @Override
+        public byte[] serialize(Integer value) {
+            return ByteBuffer.allocate(4).putInt(value).array();
+        }
+
+        @Override
+        public Integer deserialize(byte[] payload) {
+            return ByteBuffer.wrap(payload).getInt();
+        }
+
+        @Override
+        public Integer deserialize(ByteBuffer buffer, int length) {
+            return buffer.getInt();
+        }
+    };
+
+    @Param({"10000000"})
+    private int items;
+
+    @Param({"100"})
+    private int distinctPriorities;
+
+    private Path snapshot;
+    private CustomPriorityQueue customPriorityQueue;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        customPriorityQueue = new CustomPriorityQueue(items, true, distinctPriorities);
+        for (int i = 0; i < items; i++) {
+            customPriorityQueue.enqueue(new QueueItem<>(i % distinctPriorities, i));
+        }
+        snapshot = Files.createTempFile("queue", ".snapshot");
+        this.writeSnapshot();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public int writeSnapshot() throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return QueueSnapshot.write(customPriorityQueue, channel, INT_SERIALIZER);
+        }
+    }
+
+    @Benchmark
+    public CustomPriorityQueue restoreSnapshot() throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            return QueueSnapshot.restore(channel, INT_SERIALIZER);
+        }
+    }
+
+    @Benchmark
+    public CustomPriorityQueue enqueueOneByOne() {
+        CustomPriorityQueue restoredQueue = new CustomPriorityQueue(items, true, distinctPriorities);
+        for (int i = 0; i < items; i++) {
+            restoredQueue.enqueue(new QueueItem<>(i % distinctPriorities, i));
+        }
+        return restoredQueue;
+    }
+}
@@ -0,0 +1,70 @@
+package com.rimidalv.priorityqueue.benchmark;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import com.rimidalv.priorityqueue.service.QueueService;
+import com.rimidalv.priorityqueue.service.ShardedQueueService;
+import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the single lock queue service (shards = 0) and of the sharded queue service.
+ * Every thread enqueues an item and dequeues one. The thread count is set with -t,
+ * run it with -t 1, 2, 4, 8, 16, 32 and 64 to see the scaling.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ShardedQueueServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Service {
+        @Param({"0", "4", "16", "64"})
+        private int shards;
+
+        @Param({"100"})
+        private int distinctPriorities;
+
+        private QueueService queueService;
+        private ShardedQueueService shardedQueueService;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            if (shards == 0) {
+                QueueService.deleteQueueService();
+                queueService = QueueService.getInstance(new CustomPriorityQueue(Integer.MAX_VALUE, true));
+            } else {
+                shardedQueueService = new ShardedQueueService(shards, Integer.MAX_VALUE, true);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Worker {
+        private QueueItem[] queueItems;
+
+        @Setup(Level.Trial)
+        public void setUp(Service service, ThreadParams threadParams) {
+            queueItems = new QueueItem[service.distinctPriorities];
+            for (int priority = 0; priority < queueItems.length; priority++) {
+                queueItems[priority] = new QueueItem<>(priority, threadParams.getThreadIndex());
+            }
+        }
+    }
+
+    @Benchmark
+    public QueueItem enqueueAndDequeue(Service service, Worker worker) throws InterruptedException {
+        QueueItem queueItem = worker.queueItems[ThreadLocalRandom.current().nextInt(worker.queueItems.length)];
+        if (service.shardedQueueService == null) {
+            service.queueService.enqueue(queueItem);
+            return service.queueService.dequeue(1, TimeUnit.MILLISECONDS);
+        }
+        service.shardedQueueService.enqueue(queueItem);
+        return service.shardedQueueService.dequeue(1, TimeUnit.MILLISECONDS);
+    }
+}
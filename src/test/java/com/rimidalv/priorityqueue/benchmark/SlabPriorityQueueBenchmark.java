@@ -0,0 +1,66 @@
+package com.rimidalv.priorityqueue.benchmark;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import com.rimidalv.priorityqueue.utility.SlabPriorityQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded enqueue and dequeue of the slab queue and of the node based queue at a steady depth.
+ * The items are preallocated, so gc.alloc.rate.norm of the -prof gc output shows the
+ * allocation of the queue itself: 0 B/op for the slab queue.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class SlabPriorityQueueBenchmark {
+
+    @Param({"10", "1000"})
+    private int distinctPriorities;
+
+    @Param({"1000", "1000000"})
+    private int depth;
+
+    private SlabPriorityQueue slabPriorityQueue;
+    private CustomPriorityQueue customPriorityQueue;
+    private QueueItem[] queueItems;
+    private int nextPriority;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        slabPriorityQueue = new SlabPriorityQueue(depth + 1, distinctPriorities, true);
+        customPriorityQueue = new CustomPriorityQueue(depth + 1, true, distinctPriorities);
+        queueItems = new QueueItem[distinctPriorities];
+        for (int priority = 0; priority < distinctPriorities; priority++) {
+            queueItems[priority] = new QueueItem<>(priority, priority);
+        }
+        for (int i = 0; i < depth; i++) {
+            QueueItem queueItem = this.nextItem();
+            slabPriorityQueue.enqueue(queueItem);
+            customPriorityQueue.enqueue(queueItem);
+        }
+    }
+
+    @Benchmark
+    public QueueItem slabEnqueueAndDequeue() {
+        slabPriorityQueue.enqueue(this.nextItem());
+        return slabPriorityQueue.dequeue();
+    }
+
+    @Benchmark
+    public QueueItem nodeEnqueueAndDequeue() {
+        customPriorityQueue.enqueue(this.nextItem());
+        return customPriorityQueue.dequeue();
+    }
+
+    private QueueItem nextItem() {
+        QueueItem queueItem = queueItems[nextPriority];
+        nextPriority = (nextPriority + 1) % distinctPriorities;
+        return queueItem;
+    }
+}
@@ -0,0 +1,57 @@
+package com.rimidalv.priorityqueue.benchmark;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import com.rimidalv.priorityqueue.utility.StripedPriorityQueue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the producer throughput of the single monitor queue and the striped queue
+ * when every producer thread enqueues into its own priority.
+ * Run with different thread counts, e.g. -t 1 and -t 8.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StripedEnqueueBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Queues {
+        @Param({"custom", "striped"})
+        private String mode;
+
+        private CustomPriorityQueue customPriorityQueue;
+        private StripedPriorityQueue stripedPriorityQueue;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            if ("custom".equals(mode))
+                customPriorityQueue = new CustomPriorityQueue(Integer.MAX_VALUE, true);
+            else
+                stripedPriorityQueue = new StripedPriorityQueue(Integer.MAX_VALUE, true);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        private QueueItem<Integer> queueItem;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams threadParams) {
+            queueItem = new QueueItem<>(threadParams.getThreadIndex(), threadParams.getThreadIndex());
+        }
+    }
+
+    @Benchmark
+    public void enqueue(Queues queues, Producer producer) {
+        if (queues.customPriorityQueue != null)
+            queues.customPriorityQueue.enqueue(producer.queueItem);
+        else
+            queues.stripedPriorityQueue.enqueue(producer.queueItem);
+    }
+}
@@ -0,0 +1,44 @@
+package com.rimidalv.priorityqueue.benchmark;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of enqueuing a new lowest priority (tail insertion)
+ * for different queue depths. The cost should stay flat as the depth grows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class TailInsertionBenchmark {
+    private static final int HIGHEST_PRIORITY = 1;
+    private static final int LOWEST_PRIORITY = 2;
+
+    @Param({"10", "1000", "100000", "10000000"})
+    private int depth;
+
+    private CustomPriorityQueue customPriorityQueue;
+    private QueueItem<Integer> lowestPriorityItem;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        customPriorityQueue = new CustomPriorityQueue(depth + 1, true);
+        QueueItem<Integer> queueItem = new QueueItem<>(HIGHEST_PRIORITY, 0);
+        for (int i = 0; i < depth; i++) {
+            customPriorityQueue.enqueue(queueItem);
+        }
+        lowestPriorityItem = new QueueItem<>(LOWEST_PRIORITY, 0);
+    }
+
+    @Benchmark
+    public void enqueueLowestPriority() {
+        customPriorityQueue.enqueue(lowestPriorityItem);
+        customPriorityQueue.dequeue(customPriorityQueue.getFirstNodeByPriority(LOWEST_PRIORITY));
+    }
+}
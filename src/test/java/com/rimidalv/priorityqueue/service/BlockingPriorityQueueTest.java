@@ -0,0 +1,179 @@
+package com.rimidalv.priorityqueue.service;
+
+import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class BlockingPriorityQueueTest {
+    private BlockingPriorityQueue<String> blockingPriorityQueue;
+
+    @Before
+    public void setUpTestClass() {
+        blockingPriorityQueue = new BlockingPriorityQueue<>(3, true);
+    }
+
+    @Test
+    public void should_offer_until_queue_is_full() {
+        assertTrue(blockingPriorityQueue.offer(new QueueItem<>(1, "Queue item priority 1")));
+        assertTrue(blockingPriorityQueue.offer(new QueueItem<>(2, "Queue item priority 2")));
+        assertEquals(1, blockingPriorityQueue.remainingCapacity());
+        assertTrue(blockingPriorityQueue.offer(new QueueItem<>(3, "Queue item priority 3")));
+
+        assertFalse(blockingPriorityQueue.offer(new QueueItem<>(1, "Rejected queue item")));
+        assertEquals(0, blockingPriorityQueue.remainingCapacity());
+        assertEquals(3, blockingPriorityQueue.size());
+    }
+
+    @Test
+    public void should_time_out_offer_and_poll() throws InterruptedException {
+        assertNull(blockingPriorityQueue.poll(10, TimeUnit.MILLISECONDS));
+
+        for (int i = 0; i < 3; i++) {
+            blockingPriorityQueue.put(new QueueItem<>(1, "Queue item " + i));
+        }
+        assertFalse(blockingPriorityQueue.offer(new QueueItem<>(1, "Rejected queue item"), 10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void should_take_item_enqueued_by_another_thread() throws InterruptedException {
+        QueueItem<String> queueItem = new QueueItem<>(1, "Queue item priority 1");
+        new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                blockingPriorityQueue.put(queueItem);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }).start();
+
+        assertEquals(queueItem, blockingPriorityQueue.take());
+    }
+
+    @Test
+    public void should_interrupt_waiting_take() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean(false);
+        Thread consumer = new Thread(() -> {
+            try {
+                blockingPriorityQueue.take();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            latch.countDown();
+        });
+        consumer.start();
+
+        Thread.sleep(50);
+        consumer.interrupt();
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(interrupted.get());
+    }
+
+    @Test
+    public void should_drain_items_in_burst_rate_order() {
+        blockingPriorityQueue = new BlockingPriorityQueue<>(10, true);
+        int[] priorities = {1, 1, 1, 2, 2, 3};
+        for (int priority : priorities) {
+            blockingPriorityQueue.offer(new QueueItem<>(priority, "Queue item priority " + priority));
+        }
+
+        List<QueueItem<String>> drained = new ArrayList<>();
+        assertEquals(4, blockingPriorityQueue.drainTo(drained, 4));
+        assertEquals(2, blockingPriorityQueue.drainTo(drained));
+
+        int[] expectedPriorities = {1, 1, 2, 1, 2, 3};
+        for (int i = 0; i < expectedPriorities.length; i++) {
+            assertEquals(expectedPriorities[i], drained.get(i).getPriority());
+        }
+        assertTrue(blockingPriorityQueue.isEmpty());
+    }
+
+    @Test
+    public void should_peek_item_returned_by_next_poll() {
+        blockingPriorityQueue.offer(new QueueItem<>(1, "First queue item priority 1"));
+        blockingPriorityQueue.offer(new QueueItem<>(1, "Second queue item priority 1"));
+        blockingPriorityQueue.offer(new QueueItem<>(2, "Queue item priority 2"));
+        blockingPriorityQueue.poll();
+        blockingPriorityQueue.poll();
+
+        QueueItem<String> peeked = blockingPriorityQueue.peek();
+
+        assertEquals(2, peeked.getPriority());
+        assertEquals(peeked, blockingPriorityQueue.poll());
+    }
+
+    @Test
+    public void should_remove_item_through_iterator() {
+        QueueItem<String> queueItemLevel2 = new QueueItem<>(2, "Queue item priority 2");
+        blockingPriorityQueue.offer(new QueueItem<>(1, "Queue item priority 1"));
+        blockingPriorityQueue.offer(queueItemLevel2);
+        blockingPriorityQueue.offer(new QueueItem<>(3, "Queue item priority 3"));
+
+        Iterator<QueueItem<String>> iterator = blockingPriorityQueue.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getPriority() == 2) iterator.remove();
+        }
+
+        assertEquals(2, blockingPriorityQueue.size());
+        assertFalse(blockingPriorityQueue.contains(queueItemLevel2));
+    }
+
+    @Test
+    public void should_poll_delayed_item_when_it_expires() throws InterruptedException {
+        QueueItem<String> queueItem = new QueueItem<>(1, "Delayed queue item");
+        assertTrue(blockingPriorityQueue.offerDelayed(queueItem, 50, TimeUnit.MILLISECONDS));
+        assertNull(blockingPriorityQueue.poll());
+
+        assertEquals(queueItem, blockingPriorityQueue.poll(2, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 5000)
+    public void should_take_delayed_item_of_wrapped_queue() throws InterruptedException {
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(3, true);
+        customPriorityQueue.enqueue(new QueueItem<>(1, "Delayed queue item"), 50, TimeUnit.MILLISECONDS);
+        BlockingPriorityQueue<String> wrappingQueue = new BlockingPriorityQueue<>(customPriorityQueue);
+
+        assertEquals(new QueueItem<>(1, "Delayed queue item"), wrappingQueue.take());
+    }
+
+    @Test
+    public void should_count_delayed_items_in_remaining_capacity() {
+        blockingPriorityQueue.offer(new QueueItem<>(1, "Queue item priority 1"));
+        blockingPriorityQueue.offerDelayed(new QueueItem<>(1, "Delayed queue item"), 1, TimeUnit.HOURS);
+
+        assertEquals(1, blockingPriorityQueue.remainingCapacity());
+    }
+
+    @Test(timeout = 5000)
+    public void should_take_live_item_and_signal_producer_after_discarding_expired_items() throws InterruptedException {
+        blockingPriorityQueue = new BlockingPriorityQueue<>(2, true);
+        long expired = System.currentTimeMillis() - 1;
+        blockingPriorityQueue.put(new QueueItem<>(1, "Expired queue item 1", expired));
+        blockingPriorityQueue.put(new QueueItem<>(2, "Expired queue item 2", expired));
+        QueueItem<String> queueItem = new QueueItem<>(3, "Queue item priority 3");
+        Thread producer = new Thread(() -> {
+            try {
+                blockingPriorityQueue.put(queueItem);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        while (producer.getState() != Thread.State.WAITING) Thread.sleep(1);
+
+        assertEquals(queueItem, blockingPriorityQueue.take());
+        producer.join();
+        assertNull(blockingPriorityQueue.poll(10, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,138 @@
+package com.rimidalv.priorityqueue.service;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class QueuePublisherTest {
+    private QueueService queueService;
+    private QueuePublisher queuePublisher;
+
+    @Before
+    public void setUp() {
+        QueueService.deleteQueueService();
+        queueService = QueueService.getInstance(new CustomPriorityQueue(10, false));
+        queuePublisher = new QueuePublisher(queueService);
+    }
+
+    @Test
+    public void should_deliver_only_requested_items() {
+        queueService.enqueue(new QueueItem<>(2, "Second"));
+        queueService.enqueue(new QueueItem<>(1, "First"));
+        queueService.enqueue(new QueueItem<>(3, "Third"));
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        queuePublisher.subscribe(subscriber);
+
+        subscriber.subscription.request(2);
+        assertEquals(Arrays.asList("First", "Second"), subscriber.values());
+
+        subscriber.subscription.request(1);
+        assertEquals(Arrays.asList("First", "Second", "Third"), subscriber.values());
+    }
+
+    @Test
+    public void should_push_items_as_they_arrive() {
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        queuePublisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertTrue(subscriber.values().isEmpty());
+
+        queueService.enqueue(new QueueItem<>(1, "First"));
+        queueService.enqueue(new QueueItem<>(1, "Second"));
+
+        assertEquals(Arrays.asList("First", "Second"), subscriber.values());
+    }
+
+    @Test
+    public void should_leave_items_in_queue_after_cancel() throws InterruptedException {
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        queuePublisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        subscriber.subscription.cancel();
+
+        queueService.enqueue(new QueueItem<>(1, "Item"));
+
+        assertTrue(subscriber.values().isEmpty());
+        assertEquals(new QueueItem<>(1, "Item"), queueService.dequeue(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void should_signal_error_on_non_positive_request() {
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        queuePublisher.subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+        queueService.enqueue(new QueueItem<>(1, "Item"));
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertTrue(subscriber.values().isEmpty());
+    }
+
+    @Test(timeout = 5000)
+    public void should_return_taken_item_without_waiting_for_free_space_on_cancel() throws InterruptedException {
+        QueueService.deleteQueueService();
+        queueService = QueueService.getInstance(new CustomPriorityQueue(1, false));
+        List<Runnable> tasks = new ArrayList<>();
+        queuePublisher = new QueuePublisher(queueService, tasks::add);
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        queuePublisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        runTasks(tasks);
+
+        queueService.enqueue(new QueueItem<>(1, "Taken"));
+        queueService.enqueue(new QueueItem<>(1, "Queued"));
+        subscriber.subscription.cancel();
+        runTasks(tasks);
+
+        assertTrue(subscriber.values().isEmpty());
+        assertEquals(new QueueItem<>(1, "Queued"), queueService.dequeue(1, TimeUnit.SECONDS));
+        runTasks(tasks);
+        assertEquals(new QueueItem<>(1, "Taken"), queueService.dequeue(1, TimeUnit.SECONDS));
+    }
+
+    private static void runTasks(List<Runnable> tasks) {
+        List<Runnable> queuedTasks = new ArrayList<>(tasks);
+        tasks.clear();
+        for (Runnable task : queuedTasks) task.run();
+    }
+
+    private static class CollectingSubscriber implements Flow.Subscriber<QueueItem> {
+        private final List<QueueItem> queueItems = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(QueueItem queueItem) {
+            queueItems.add(queueItem);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        List<Object> values() {
+            List<Object> values = new ArrayList<>();
+            for (QueueItem queueItem : queueItems) values.add(queueItem.getQueueItem());
+            return values;
+        }
+    }
+}
@@ -1,17 +1,30 @@
 package com.rimidalv.priorityqueue.service;
 
 import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import com.rimidalv.priorityqueue.utility.QueueEventListener;
 import com.rimidalv.priorityqueue.domain.QueueItem;
 import com.rimidalv.priorityqueue.domain.QueueNode;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -30,6 +43,7 @@ public class QueueServiceTest {
         queueItemLevel1 = new QueueItem<>(1, "Queue item priority 1");
         queueItemLevel2 = new QueueItem<>(2, "Queue item priority 2");
         queueItemLevel3 = new QueueItem<>(3, "Queue item priority 3");
+        lenient().when(customPriorityQueue.getNextDelayNanos()).thenReturn(Long.MAX_VALUE);
 
         QueueService.deleteQueueService();
         queueService = QueueService.getInstance(customPriorityQueue);
@@ -48,23 +62,246 @@ public class QueueServiceTest {
     }
 
     @Test
-    public void should_dequeue_wait_no_empty_queue_simple_search() {
+    public void should_dequeue_wait_no_empty_queue_simple_search() throws InterruptedException {
         when(customPriorityQueue.isEmpty()).thenReturn(true).thenReturn(false);
+        when(customPriorityQueue.hasFreeCapacity()).thenReturn(true);
         when(customPriorityQueue.dequeue()).thenReturn(queueItemLevel1);
 
-        queueService.dequeue();
+        Thread consumer = new Thread(queueService::dequeue);
+        consumer.start();
+        waitUntilWaiting(consumer);
+        verify(customPriorityQueue, never()).dequeue();
+
+        queueService.enqueue(queueItemLevel2);
+        consumer.join(1000);
 
+        assertFalse(consumer.isAlive());
         verify(customPriorityQueue, times(2)).isEmpty();
         verify(customPriorityQueue, times(1)).dequeue();
     }
 
     @Test
-    public void should_enqueue_wait_no_free_space() {
+    public void should_notify_event_listener_after_consumer_waited() throws InterruptedException {
+        QueueEventListener eventListener = mock(QueueEventListener.class);
+        queueService.setQueueEventListener(eventListener);
+        when(customPriorityQueue.isEmpty()).thenReturn(true).thenReturn(false);
+        when(customPriorityQueue.hasFreeCapacity()).thenReturn(true);
+        when(customPriorityQueue.dequeue()).thenReturn(queueItemLevel1);
+
+        Thread consumer = new Thread(queueService::dequeue);
+        consumer.start();
+        waitUntilWaiting(consumer);
+        queueService.enqueue(queueItemLevel2);
+        consumer.join(1000);
+
+        verify(customPriorityQueue).setQueueEventListener(eventListener);
+        verify(eventListener).onConsumerWait(anyLong());
+        verify(eventListener, never()).onProducerWait(anyLong());
+    }
+
+    @Test
+    public void should_dequeue_again_if_no_item_returned() {
+        when(customPriorityQueue.isEmpty()).thenReturn(false);
+        when(customPriorityQueue.dequeue()).thenReturn(null).thenReturn(queueItemLevel1);
+
+        QueueItem item = queueService.dequeue();
+
+        assertEquals(queueItemLevel1, item);
+        verify(customPriorityQueue, times(2)).dequeue();
+    }
+
+    @Test
+    public void should_return_null_if_dequeue_times_out() throws InterruptedException {
+        when(customPriorityQueue.isEmpty()).thenReturn(true);
+
+        QueueItem item = queueService.dequeue(10, TimeUnit.MILLISECONDS);
+
+        assertNull(item);
+        verify(customPriorityQueue, never()).dequeue();
+    }
+
+    @Test
+    public void should_enqueue_wait_no_free_space() throws InterruptedException {
         when(customPriorityQueue.hasFreeCapacity()).thenReturn(false).thenReturn(true);
+        when(customPriorityQueue.isEmpty()).thenReturn(false);
+        when(customPriorityQueue.dequeue()).thenReturn(queueItemLevel2);
+
+        Thread producer = new Thread(() -> queueService.enqueue(queueItemLevel1));
+        producer.start();
+        waitUntilWaiting(producer);
+        verify(customPriorityQueue, never()).enqueue(queueItemLevel1);
 
-        queueService.enqueue(queueItemLevel1);
+        queueService.dequeue();
+        producer.join(1000);
 
+        assertFalse(producer.isAlive());
         verify(customPriorityQueue, times(2)).hasFreeCapacity();
         verify(customPriorityQueue, times(1)).enqueue(queueItemLevel1);
     }
+
+    @Test
+    public void should_enqueue_batch_and_return_accepted_count() {
+        List<QueueItem> queueItems = Arrays.asList(queueItemLevel1, queueItemLevel2, queueItemLevel3);
+        when(customPriorityQueue.hasFreeCapacity()).thenReturn(true);
+        when(customPriorityQueue.enqueueAll(queueItems)).thenReturn(2);
+
+        int accepted = queueService.enqueueAll(queueItems);
+
+        assertEquals(2, accepted);
+        verify(customPriorityQueue, times(1)).enqueueAll(queueItems);
+    }
+
+    @Test
+    public void should_admit_waiting_producers_in_fifo_order() throws InterruptedException {
+        when(customPriorityQueue.hasFreeCapacity()).thenReturn(false, true);
+        when(customPriorityQueue.isEmpty()).thenReturn(false);
+        when(customPriorityQueue.dequeue()).thenReturn(queueItemLevel1);
+
+        Thread firstProducer = new Thread(() -> queueService.enqueue(queueItemLevel2));
+        firstProducer.start();
+        waitUntilWaiting(firstProducer);
+        Thread secondProducer = new Thread(() -> queueService.enqueue(queueItemLevel3));
+        secondProducer.start();
+        waitUntilWaiting(secondProducer);
+
+        queueService.dequeue();
+        firstProducer.join(1000);
+        secondProducer.join(1000);
+
+        InOrder inOrder = inOrder(customPriorityQueue);
+        inOrder.verify(customPriorityQueue).enqueue(queueItemLevel2);
+        inOrder.verify(customPriorityQueue).enqueue(queueItemLevel3);
+    }
+
+    @Test
+    public void should_complete_async_dequeue_if_queue_has_element() {
+        when(customPriorityQueue.dequeue()).thenReturn(queueItemLevel1);
+
+        CompletableFuture<QueueItem> future = queueService.dequeueAsync();
+
+        assertTrue(future.isDone());
+        assertEquals(queueItemLevel1, future.join());
+    }
+
+    @Test
+    public void should_complete_waiting_async_dequeue_on_enqueue() throws Exception {
+        when(customPriorityQueue.hasFreeCapacity()).thenReturn(true);
+        when(customPriorityQueue.dequeue()).thenReturn(null, queueItemLevel2);
+
+        CompletableFuture<QueueItem> future = queueService.dequeueAsync();
+        assertFalse(future.isDone());
+        queueService.enqueue(queueItemLevel2);
+
+        assertEquals(queueItemLevel2, future.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void should_skip_cancelled_async_dequeue() throws Exception {
+        when(customPriorityQueue.hasFreeCapacity()).thenReturn(true);
+        when(customPriorityQueue.dequeue()).thenReturn(null, queueItemLevel2);
+
+        CompletableFuture<QueueItem> cancelledFuture = queueService.dequeueAsync();
+        CompletableFuture<QueueItem> waitingFuture = queueService.dequeueAsync();
+        assertTrue(cancelledFuture.cancel(false));
+        queueService.enqueue(queueItemLevel2);
+
+        assertTrue(cancelledFuture.isCancelled());
+        assertEquals(queueItemLevel2, waitingFuture.get(1, TimeUnit.SECONDS));
+        verify(customPriorityQueue, times(2)).dequeue();
+    }
+
+    @Test(timeout = 5000)
+    public void should_wake_blocked_consumer_when_delayed_element_expires() throws InterruptedException {
+        QueueService.deleteQueueService();
+        QueueService delayingService = QueueService.getInstance(new CustomPriorityQueue(2, true));
+        delayingService.enqueueDelayed(queueItemLevel2, 50, TimeUnit.MILLISECONDS);
+
+        assertEquals(queueItemLevel2, delayingService.dequeue());
+        delayingService.enqueueDelayed(queueItemLevel1, 50, TimeUnit.MILLISECONDS);
+        assertEquals(queueItemLevel1, delayingService.dequeue(2, TimeUnit.SECONDS));
+        delayingService.enqueueDelayed(queueItemLevel3, 50, TimeUnit.MILLISECONDS);
+        List<QueueItem> drainedItems = new ArrayList<>();
+        assertEquals(1, delayingService.drainTo(drainedItems, 10));
+        assertEquals(Arrays.asList(queueItemLevel3), drainedItems);
+    }
+
+    @Test(timeout = 5000)
+    public void should_complete_waiting_future_when_delayed_element_expires() throws Exception {
+        QueueService.deleteQueueService();
+        QueueService delayingService = QueueService.getInstance(new CustomPriorityQueue(3, true));
+        CompletableFuture<QueueItem> firstFuture = delayingService.dequeueAsync();
+        CompletableFuture<QueueItem> secondFuture = delayingService.dequeueAsync();
+        delayingService.enqueueDelayed(queueItemLevel2, 200, TimeUnit.MILLISECONDS);
+        delayingService.enqueueDelayed(queueItemLevel1, 20, TimeUnit.MILLISECONDS);
+
+        assertEquals(queueItemLevel1, firstFuture.get(2, TimeUnit.SECONDS));
+        assertFalse(secondFuture.isDone());
+        assertEquals(queueItemLevel2, secondFuture.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 5000)
+    public void should_signal_producer_when_dequeue_discards_expired_elements() throws InterruptedException {
+        QueueService.deleteQueueService();
+        QueueService expiringService = QueueService.getInstance(new CustomPriorityQueue(2, true));
+        long expired = System.currentTimeMillis() - 1;
+        expiringService.enqueue(new QueueItem<>(1, "Expired 1", expired));
+        expiringService.enqueue(new QueueItem<>(2, "Expired 2", expired));
+        Thread producer = new Thread(() -> expiringService.enqueue(queueItemLevel3));
+        producer.start();
+        waitUntilWaiting(producer);
+
+        assertEquals(queueItemLevel3, expiringService.dequeue(2, TimeUnit.SECONDS));
+        producer.join();
+    }
+
+    @Test(timeout = 5000)
+    public void should_signal_producer_when_expired_elements_are_removed() throws InterruptedException {
+        QueueService.deleteQueueService();
+        QueueService expiringService = QueueService.getInstance(new CustomPriorityQueue(2, true));
+        expiringService.enqueue(queueItemLevel1);
+        expiringService.enqueue(new QueueItem<>(1, "Expired", System.currentTimeMillis() - 1));
+        Thread producer = new Thread(() -> expiringService.enqueue(queueItemLevel2));
+        producer.start();
+        waitUntilWaiting(producer);
+
+        assertEquals(1, expiringService.removeExpired(10));
+        producer.join();
+        assertEquals(2, expiringService.size());
+    }
+
+    @Test(timeout = 5000)
+    public void should_admit_next_producer_when_admitted_element_has_invalid_priority() throws InterruptedException {
+        QueueService.deleteQueueService();
+        QueueService rangeService = QueueService.getInstance(new CustomPriorityQueue(1, true, 4));
+        rangeService.enqueue(queueItemLevel1);
+        AtomicReference<RuntimeException> rejection = new AtomicReference<>();
+        Thread invalidProducer = new Thread(() -> {
+            try {
+                rangeService.enqueue(new QueueItem<>(10, "Out of range"));
+            } catch (IllegalArgumentException e) {
+                rejection.set(e);
+            }
+        });
+        invalidProducer.start();
+        waitUntilWaiting(invalidProducer);
+        Thread producer = new Thread(() -> rangeService.enqueue(queueItemLevel2));
+        producer.start();
+        waitUntilWaiting(producer);
+        // the invalid producer waits again behind the next one, so the next one wakes first and waits for its turn
+        invalidProducer.interrupt();
+        Thread.sleep(50);
+        waitUntilWaiting(invalidProducer);
+
+        assertEquals(queueItemLevel1, rangeService.dequeue());
+        invalidProducer.join();
+        producer.join();
+        assertNotNull(rejection.get());
+        assertEquals(queueItemLevel2, rangeService.dequeue());
+    }
+
+    private void waitUntilWaiting(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+    }
 }
@@ -0,0 +1,128 @@
+package com.rimidalv.priorityqueue.service;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import com.rimidalv.priorityqueue.utility.CustomPriorityQueue;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ShardedQueueServiceTest {
+
+    @Test
+    public void should_route_items_round_robin_and_dequeue_all() {
+        List<CustomPriorityQueue> shards = Arrays.asList(new CustomPriorityQueue(10, false), new CustomPriorityQueue(10, false));
+        ShardedQueueService shardedQueueService = new ShardedQueueService(shards);
+
+        for (int i = 0; i < 6; i++) assertTrue(shardedQueueService.enqueue(new QueueItem<>(1, "Item " + i)));
+
+        assertEquals(3, shards.get(0).size());
+        assertEquals(3, shards.get(1).size());
+        assertEquals(6, shardedQueueService.size());
+        Set<Object> dequeued = new HashSet<>();
+        for (QueueItem queueItem = shardedQueueService.poll(); queueItem != null; queueItem = shardedQueueService.poll()) {
+            dequeued.add(queueItem.getQueueItem());
+        }
+        assertEquals(6, dequeued.size());
+        assertTrue(shardedQueueService.isEmpty());
+    }
+
+    @Test
+    public void should_keep_order_of_items_of_same_key() {
+        ShardedQueueService shardedQueueService = new ShardedQueueService(4, 100, false);
+
+        for (int i = 0; i < 5; i++) assertTrue(shardedQueueService.enqueue("key", new QueueItem<>(2, i)));
+
+        List<Object> dequeued = new ArrayList<>();
+        for (QueueItem queueItem = shardedQueueService.poll(); queueItem != null; queueItem = shardedQueueService.poll()) {
+            dequeued.add(queueItem.getQueueItem());
+        }
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), dequeued);
+    }
+
+    @Test
+    public void should_prefer_shard_with_higher_priority_and_steal_from_other_shard() {
+        List<CustomPriorityQueue> shards = Arrays.asList(new CustomPriorityQueue(10, false), new CustomPriorityQueue(10, false));
+        ShardedQueueService shardedQueueService = new ShardedQueueService(shards);
+        Object firstShardKey = keyOfShard(shardedQueueService, 0);
+        Object secondShardKey = keyOfShard(shardedQueueService, 1);
+
+        shardedQueueService.enqueue(firstShardKey, new QueueItem<>(5, "Low"));
+        shardedQueueService.enqueue(secondShardKey, new QueueItem<>(1, "High"));
+
+        assertEquals("High", shardedQueueService.poll().getQueueItem());
+        assertEquals("Low", shardedQueueService.poll().getQueueItem());
+        assertNull(shardedQueueService.poll());
+    }
+
+    @Test
+    public void should_not_enqueue_item_to_full_shard_of_key() {
+        ShardedQueueService shardedQueueService = new ShardedQueueService(2, 2, false);
+        Object key = keyOfShard(shardedQueueService, 0);
+
+        assertTrue(shardedQueueService.enqueue(key, new QueueItem<>(1, "First")));
+        assertFalse(shardedQueueService.enqueue(key, new QueueItem<>(1, "Second")));
+        assertTrue(shardedQueueService.enqueue(new QueueItem<>(1, "Third")));
+        assertFalse(shardedQueueService.enqueue(new QueueItem<>(1, "Fourth")));
+        assertEquals(2, shardedQueueService.size());
+    }
+
+    @Test
+    public void should_wait_for_item_of_any_shard() throws InterruptedException {
+        ShardedQueueService shardedQueueService = new ShardedQueueService(4, 100, true);
+        AtomicReference<QueueItem> dequeued = new AtomicReference<>();
+
+        Thread consumer = new Thread(() -> {
+            try {
+                dequeued.set(shardedQueueService.dequeue(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        Thread.sleep(50);
+        shardedQueueService.enqueue("key", new QueueItem<>(3, "Item"));
+        consumer.join(5000);
+
+        assertEquals(new QueueItem<>(3, "Item"), dequeued.get());
+        assertNull(shardedQueueService.dequeue(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeout = 5000)
+    public void should_subtract_discarded_expired_items_from_size() throws InterruptedException {
+        ShardedQueueService shardedQueueService = new ShardedQueueService(1, 10, false);
+        long expired = System.currentTimeMillis() - 1;
+        shardedQueueService.enqueue(new QueueItem<>(1, "Expired 1", expired));
+        shardedQueueService.enqueue(new QueueItem<>(2, "Expired 2", expired));
+        shardedQueueService.enqueue(new QueueItem<>(3, "Live"));
+
+        assertEquals(new QueueItem<>(3, "Live"), shardedQueueService.dequeue(1, TimeUnit.SECONDS));
+        assertEquals(0, shardedQueueService.size());
+        assertNull(shardedQueueService.dequeue(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void should_subtract_removed_expired_items_from_size() {
+        ShardedQueueService shardedQueueService = new ShardedQueueService(2, 10, false);
+        for (int i = 0; i < 2; i++) {
+            shardedQueueService.enqueue(new QueueItem<>(1, "Live " + i));
+            shardedQueueService.enqueue(new QueueItem<>(1, "Expired " + i, System.currentTimeMillis() - 1));
+        }
+
+        assertEquals(2, shardedQueueService.removeExpired(10));
+        assertEquals(2, shardedQueueService.size());
+    }
+
+    private static Object keyOfShard(ShardedQueueService shardedQueueService, int shard) {
+        for (int key = 0; ; key++) {
+            if (shardedQueueService.getShardIndex(key) == shard) return key;
+        }
+    }
+}
@@ -5,7 +5,14 @@ import com.rimidalv.priorityqueue.domain.QueueNode;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 
 public class CustomPriorityQueueTest {
 
@@ -535,4 +542,466 @@ public class CustomPriorityQueueTest {
         int nextPriority = customPriorityQueue.getNextQueuePriority(1);
         assertEquals(-1, nextPriority);
     }
+
+    @Test
+    public void should_enqueue_sparse_priorities_in_order() {
+        customPriorityQueue = new CustomPriorityQueue(10, true);
+        customPriorityQueue.enqueue(new QueueItem<>(10000, "Priority 10000"));
+        customPriorityQueue.enqueue(new QueueItem<>(1, "Priority 1"));
+        customPriorityQueue.enqueue(new QueueItem<>(500, "Priority 500"));
+        customPriorityQueue.enqueue(new QueueItem<>(70, "Priority 70"));
+
+        int[] expectedPriorities = {1, 70, 500, 10000};
+        QueueNode<QueueItem> node = customPriorityQueue.getHeaderNodeElement();
+        for (int expectedPriority : expectedPriorities) {
+            assertEquals(expectedPriority, node.getQueueItem().getPriority());
+            node = node.getNextItem();
+        }
+        assertNull(node);
+
+        assertEquals(500, customPriorityQueue.getNextQueuePriority(70));
+        assertEquals(10000, customPriorityQueue.getNextQueuePriority(500));
+    }
+
+    @Test
+    public void should_not_return_null_for_sparse_priorities_without_in_depth_search() {
+        for (boolean inDepthSearch : new boolean[] {true, false}) {
+            customPriorityQueue = new CustomPriorityQueue(10, inDepthSearch);
+            customPriorityQueue.enqueue(new QueueItem<>(1, "Priority 1"));
+            customPriorityQueue.enqueue(new QueueItem<>(1, "Priority 1"));
+            customPriorityQueue.enqueue(new QueueItem<>(500, "Priority 500"));
+            customPriorityQueue.enqueue(new QueueItem<>(1, "Priority 1"));
+            customPriorityQueue.enqueue(new QueueItem<>(10000, "Priority 10000"));
+
+            for (int expectedPriority : new int[] {1, 1, 500, 1, 10000}) {
+                assertEquals(expectedPriority, customPriorityQueue.dequeue().getPriority());
+            }
+            assertTrue(customPriorityQueue.isEmpty());
+            assertNull(customPriorityQueue.dequeue());
+        }
+    }
+
+    @Test
+    public void should_return_next_available_priority_after_priority_removed() {
+        QueueItem<String> queueItemLevel3 =
+                new QueueItem<>(3, "This is a new higher priority queue item level 3");
+        QueueItem<String> queueItemLevel5 =
+                new QueueItem<>(5, "This is a new higher priority queue item level 5");
+        customPriorityQueue.enqueue(queueItem);
+        customPriorityQueue.enqueue(queueItemLevel3);
+        customPriorityQueue.enqueue(queueItemLevel5);
+
+        customPriorityQueue.dequeue(customPriorityQueue.getFirstNodeByPriority(3));
+
+        assertEquals(5, customPriorityQueue.getNextQueuePriority(queueItem.getPriority()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_negative_priority() {
+        customPriorityQueue.enqueue(new QueueItem<>(-1, "Negative priority"));
+    }
+
+    @Test
+    public void should_keep_tail_node_on_insert_and_remove() {
+        QueueItem<String> queueItemLevel2 = new QueueItem<>(2, "This is 2nd level priority queue item");
+        QueueItem<String> queueItemLevel3 = new QueueItem<>(3, "This is 3rd level priority queue item");
+        customPriorityQueue.enqueue(queueItemLevel2);
+        assertEquals(customPriorityQueue.getHeaderNodeElement(), customPriorityQueue.getTailNodeElement());
+
+        customPriorityQueue.enqueue(queueItem);
+        assertEquals(queueItemLevel2, customPriorityQueue.getTailNodeElement().getQueueItem());
+
+        customPriorityQueue.enqueue(queueItemLevel3);
+        assertEquals(queueItemLevel3, customPriorityQueue.getTailNodeElement().getQueueItem());
+
+        customPriorityQueue.dequeue(customPriorityQueue.getTailNodeElement());
+        assertEquals(queueItemLevel2, customPriorityQueue.getTailNodeElement().getQueueItem());
+        assertNull(customPriorityQueue.getTailNodeElement().getNextItem());
+
+        customPriorityQueue.dequeue(customPriorityQueue.getHeaderNodeElement());
+        customPriorityQueue.dequeue(customPriorityQueue.getHeaderNodeElement());
+        assertNull(customPriorityQueue.getTailNodeElement());
+    }
+
+    @Test
+    public void should_update_tail_node_on_add_after_tail() {
+        customPriorityQueue.addToFront(queueItem);
+        QueueItem<String> addAfterItem = new QueueItem<>(1, "This is the newest queue item");
+
+        customPriorityQueue.addAfterNode(customPriorityQueue.getTailNodeElement(), addAfterItem);
+
+        assertEquals(addAfterItem, customPriorityQueue.getTailNodeElement().getQueueItem());
+        assertEquals(customPriorityQueue.getHeaderNodeElement(), customPriorityQueue.getTailNodeElement().getPreviousItem());
+    }
+
+    @Test
+    public void should_update_last_node_when_last_node_of_priority_removed() {
+        QueueItem<String> newerQueueItem = new QueueItem<>(1, "This is newer queue item");
+        QueueItem<String> queueItemLevel2 = new QueueItem<>(2, "This is 2nd level priority queue item");
+        customPriorityQueue.enqueue(queueItem);
+        customPriorityQueue.enqueue(newerQueueItem);
+        customPriorityQueue.enqueue(queueItemLevel2);
+
+        assertTrue(customPriorityQueue.remove(newerQueueItem));
+
+        QueueNode<QueueItem> lastNode = customPriorityQueue.getLastNodeByPriority(1);
+        assertEquals(queueItem, lastNode.getQueueItem());
+        assertEquals(customPriorityQueue.getFirstNodeByPriority(1), lastNode);
+        assertFalse(customPriorityQueue.remove(newerQueueItem));
+        assertEquals(2, customPriorityQueue.size());
+    }
+
+    @Test
+    public void should_return_items_in_list_order() {
+        QueueItem<String> queueItemLevel2 = new QueueItem<>(2, "This is 2nd level priority queue item");
+        customPriorityQueue.enqueue(queueItemLevel2);
+        customPriorityQueue.enqueue(queueItem);
+
+        assertEquals(Arrays.asList(queueItem, queueItemLevel2), customPriorityQueue.toList());
+    }
+
+    @Test
+    public void should_enqueue_batch_in_the_same_order_as_single_enqueues() {
+        CustomPriorityQueue batchQueue = new CustomPriorityQueue(100, true);
+        customPriorityQueue = new CustomPriorityQueue(100, true);
+        List<QueueItem> existingItems = Arrays.asList(new QueueItem<>(2, "a"), new QueueItem<>(5, "b"), new QueueItem<>(2, "c"));
+        List<QueueItem> newItems = Arrays.asList(new QueueItem<>(7, "d"), new QueueItem<>(0, "e"), new QueueItem<>(2, "f"),
+                new QueueItem<>(3, "g"), new QueueItem<>(7, "h"), new QueueItem<>(0, "i"));
+        existingItems.forEach(customPriorityQueue::enqueue);
+        existingItems.forEach(batchQueue::enqueue);
+
+        newItems.forEach(customPriorityQueue::enqueue);
+        int accepted = batchQueue.enqueueAll(newItems);
+
+        assertEquals(newItems.size(), accepted);
+        assertEquals(customPriorityQueue.toList(), batchQueue.toList());
+        assertEquals(customPriorityQueue.size(), batchQueue.size());
+        for (int priority : new int[] {0, 2, 3, 5, 7}) {
+            assertEquals(customPriorityQueue.getFirstNodeByPriority(priority).getQueueItem(),
+                    batchQueue.getFirstNodeByPriority(priority).getQueueItem());
+            assertEquals(customPriorityQueue.getLastNodeByPriority(priority).getQueueItem(),
+                    batchQueue.getLastNodeByPriority(priority).getQueueItem());
+        }
+        assertNull(batchQueue.getHeaderNodeElement().getPreviousItem());
+        assertEquals(newItems.get(4), batchQueue.getTailNodeElement().getQueueItem());
+        assertNull(batchQueue.getTailNodeElement().getNextItem());
+    }
+
+    @Test
+    public void should_enqueue_batch_partially_when_capacity_runs_out() {
+        customPriorityQueue = new CustomPriorityQueue(3, true);
+        customPriorityQueue.enqueue(queueItem);
+        QueueItem<String> queueItemLevel2 = new QueueItem<>(2, "This is 2nd level priority queue item");
+        QueueItem<String> queueItemLevel3 = new QueueItem<>(3, "This is 3rd level priority queue item");
+        QueueItem<String> queueItemLevel0 = new QueueItem<>(0, "This is 0 level priority queue item");
+
+        int accepted = customPriorityQueue.enqueueAll(Arrays.asList(queueItemLevel3, queueItemLevel2, queueItemLevel0));
+
+        assertEquals(2, accepted);
+        assertEquals(Arrays.asList(queueItem, queueItemLevel2, queueItemLevel3), customPriorityQueue.toList());
+        assertEquals(0, customPriorityQueue.enqueueAll(Arrays.asList(queueItemLevel0)));
+    }
+
+    @Test
+    public void should_leave_queue_unchanged_if_batch_has_invalid_priority() {
+        CustomPriorityQueue denseQueue = new CustomPriorityQueue(10, true, 5);
+        QueueEventListener eventListener = mock(QueueEventListener.class);
+        denseQueue.setQueueEventListener(eventListener);
+        List<QueueItem> newItems = Arrays.asList(
+                new QueueItem<>(1, "Expiring", System.currentTimeMillis() + 60000), new QueueItem<>(5, "Invalid"));
+
+        try {
+            denseQueue.enqueueAll(newItems);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertTrue(denseQueue.isEmpty());
+        }
+        assertEquals(0, denseQueue.removeExpired(10));
+        verifyNoInteractions(eventListener);
+    }
+
+    @Test
+    public void should_notify_event_listener() {
+        QueueEventListener eventListener = mock(QueueEventListener.class);
+        customPriorityQueue = new CustomPriorityQueue(2, true);
+        customPriorityQueue.setQueueEventListener(eventListener);
+        QueueItem<String> queueItemLevel2 = new QueueItem<>(2, "This is 2nd level priority queue item");
+
+        customPriorityQueue.enqueue(queueItem);
+        customPriorityQueue.enqueueAll(Arrays.asList(queueItemLevel2, queueItemLevel2));
+        customPriorityQueue.dequeue();
+
+        verify(eventListener).onEnqueue(1, 1);
+        verify(eventListener).onEnqueue(2, 2);
+        verify(eventListener).onReject(2);
+        verify(eventListener).onDequeue(1, 1);
+        verifyNoMoreInteractions(eventListener);
+    }
+
+    @Test
+    public void should_dequeue_in_the_same_order_with_priority_range() {
+        for (boolean inDepthSearch : new boolean[] {true, false}) {
+            CustomPriorityQueue denseQueue = new CustomPriorityQueue(200, inDepthSearch, 5);
+            customPriorityQueue = new CustomPriorityQueue(200, inDepthSearch);
+            Random random = new Random(7);
+            for (int i = 0; i < 200; i++) {
+                QueueItem<Integer> queueItem = new QueueItem<>(random.nextInt(5), i);
+                denseQueue.enqueue(queueItem);
+                customPriorityQueue.enqueue(queueItem);
+            }
+
+            assertEquals(customPriorityQueue.toList(), denseQueue.toList());
+            List<QueueItem> expected = new ArrayList<>();
+            List<QueueItem> actual = new ArrayList<>();
+            customPriorityQueue.drainTo(expected, 200);
+            denseQueue.drainTo(actual, 200);
+            assertEquals(expected, actual);
+            assertTrue(denseQueue.isEmpty());
+            assertNull(denseQueue.getFirstNodeByPriority(0));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_priority_out_of_priority_range() {
+        customPriorityQueue = new CustomPriorityQueue(10, true, 5);
+
+        customPriorityQueue.enqueue(new QueueItem<>(5, "Out of range priority"));
+    }
+
+    @Test
+    public void should_return_null_node_for_priority_out_of_priority_range() {
+        customPriorityQueue = new CustomPriorityQueue(10, true, 5);
+
+        assertNull(customPriorityQueue.getFirstNodeByPriority(5));
+        assertNull(customPriorityQueue.getLastNodeByPriority(-1));
+    }
+
+    @Test
+    public void should_cancel_last_item_of_priority_with_handle() {
+        customPriorityQueue = new CustomPriorityQueue(10, true);
+        customPriorityQueue.enqueue(new QueueItem<>(1, "First"));
+        QueueHandle middleHandle = customPriorityQueue.enqueue(new QueueItem<>(1, "Middle"));
+        QueueHandle lastHandle = customPriorityQueue.enqueue(new QueueItem<>(1, "Last"));
+        customPriorityQueue.enqueue(new QueueItem<>(2, "Lower"));
+
+        assertTrue(lastHandle.cancel());
+        assertEquals("Middle", customPriorityQueue.getLastNodeByPriority(1).getQueueItem().getQueueItem());
+        assertTrue(middleHandle.cancel());
+        assertEquals(customPriorityQueue.getFirstNodeByPriority(1), customPriorityQueue.getLastNodeByPriority(1));
+
+        customPriorityQueue.enqueue(new QueueItem<>(1, "New"));
+        assertEquals(Arrays.asList(new QueueItem<>(1, "First"), new QueueItem<>(1, "New"), new QueueItem<>(2, "Lower")),
+                customPriorityQueue.toList());
+    }
+
+    @Test
+    public void should_not_cancel_dequeued_or_cancelled_item() {
+        customPriorityQueue = new CustomPriorityQueue(10, true);
+        QueueHandle dequeuedHandle = customPriorityQueue.enqueue(new QueueItem<>(1, "Dequeued"));
+        QueueHandle cancelledHandle = customPriorityQueue.enqueue(new QueueItem<>(3, "Cancelled"));
+        customPriorityQueue.enqueue(new QueueItem<>(2, "Queued"));
+
+        customPriorityQueue.dequeue();
+        assertTrue(cancelledHandle.cancel());
+
+        assertFalse(dequeuedHandle.isQueued());
+        assertFalse(dequeuedHandle.cancel());
+        assertFalse(cancelledHandle.cancel());
+        assertEquals(1, customPriorityQueue.size());
+        assertEquals(customPriorityQueue.getHeaderNodeElement(), customPriorityQueue.getTailNodeElement());
+    }
+
+    @Test
+    public void should_return_no_handle_at_max_capacity() {
+        customPriorityQueue = new CustomPriorityQueue(1, true);
+
+        assertNotNull(customPriorityQueue.enqueue(queueItem));
+        assertNull(customPriorityQueue.enqueue(queueItem));
+    }
+
+    @Test
+    public void should_move_item_to_end_of_new_priority() {
+        customPriorityQueue = new CustomPriorityQueue(10, true);
+        QueueItem<String> lowItem = new QueueItem<>(3, "Low");
+        customPriorityQueue.enqueue(new QueueItem<>(1, "High"));
+        customPriorityQueue.enqueue(new QueueItem<>(3, "Other low"));
+        QueueHandle lowHandle = customPriorityQueue.enqueue(lowItem);
+
+        assertTrue(customPriorityQueue.changePriority(lowHandle, 1));
+        assertEquals(Arrays.asList(new QueueItem<>(1, "High"), new QueueItem<>(1, "Low"), new QueueItem<>(3, "Other low")),
+                customPriorityQueue.toList());
+        assertEquals(3, lowItem.getPriority());
+
+        assertTrue(customPriorityQueue.changePriority(lowHandle, 2));
+        assertEquals(Arrays.asList(new QueueItem<>(1, "High"), new QueueItem<>(2, "Low"), new QueueItem<>(3, "Other low")),
+                customPriorityQueue.toList());
+        assertEquals(customPriorityQueue.getFirstNodeByPriority(2), customPriorityQueue.getLastNodeByPriority(2));
+        assertEquals(3, customPriorityQueue.size());
+    }
+
+    @Test
+    public void should_keep_queue_consistent_after_random_priority_changes() {
+        customPriorityQueue = new CustomPriorityQueue(1000, true, 50);
+        Random random = new Random(11);
+        List<QueueHandle> queueHandles = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) queueHandles.add(customPriorityQueue.enqueue(new QueueItem<>(random.nextInt(50), i)));
+
+        for (int i = 0; i < 5000; i++) {
+            customPriorityQueue.changePriority(queueHandles.get(random.nextInt(1000)), random.nextInt(50));
+        }
+
+        List<QueueItem> queueItems = customPriorityQueue.toList();
+        assertEquals(1000, queueItems.size());
+        for (int i = 1; i < queueItems.size(); i++) {
+            assertTrue(queueItems.get(i - 1).getPriority() <= queueItems.get(i).getPriority());
+        }
+        List<QueueItem> drained = new ArrayList<>();
+        customPriorityQueue.drainTo(drained, 1000);
+        assertEquals(1000, drained.size());
+        assertTrue(customPriorityQueue.isEmpty());
+    }
+
+    @Test
+    public void should_not_change_priority_of_dequeued_item() {
+        customPriorityQueue = new CustomPriorityQueue(10, true);
+        QueueHandle queueHandle = customPriorityQueue.enqueue(queueItem);
+        customPriorityQueue.dequeue();
+
+        assertFalse(customPriorityQueue.changePriority(queueHandle, 2));
+        assertTrue(customPriorityQueue.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_handle_of_other_queue() {
+        QueueHandle queueHandle = new CustomPriorityQueue(10, true).enqueue(queueItem);
+
+        customPriorityQueue.changePriority(queueHandle, 2);
+    }
+
+    @Test
+    public void should_promote_aged_item_to_next_present_priority() throws InterruptedException {
+        customPriorityQueue = new CustomPriorityQueue(10, true);
+        QueueEventListener eventListener = mock(QueueEventListener.class);
+        customPriorityQueue.setQueueEventListener(eventListener);
+        customPriorityQueue.setAging(1, TimeUnit.MILLISECONDS);
+        customPriorityQueue.enqueue(new QueueItem<>(1, "First"));
+        customPriorityQueue.enqueue(new QueueItem<>(1, "Second"));
+        customPriorityQueue.enqueue(new QueueItem<>(5, "Aged"));
+        Thread.sleep(5);
+
+        assertEquals("First", customPriorityQueue.dequeue().getQueueItem());
+
+        verify(eventListener).onPromote(5, 1);
+        assertEquals(Arrays.asList(new QueueItem<>(1, "Second"), new QueueItem<>(1, "Aged")),
+                customPriorityQueue.toList());
+        customPriorityQueue.drainTo(new ArrayList<>(), 2);
+        assertTrue(customPriorityQueue.getMaximumWaitNanos(5) >= TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(0, customPriorityQueue.getMaximumWaitNanos(2));
+    }
+
+    @Test
+    public void should_peek_item_which_dequeue_returns_after_promotion() throws InterruptedException {
+        customPriorityQueue = new CustomPriorityQueue(10, true);
+        customPriorityQueue.setAging(50, TimeUnit.MILLISECONDS);
+        customPriorityQueue.enqueue(new QueueItem<>(1, "A"));
+        customPriorityQueue.enqueue(new QueueItem<>(1, "B"));
+        customPriorityQueue.enqueue(new QueueItem<>(1, "C"));
+        customPriorityQueue.enqueue(new QueueItem<>(5, "Aged"));
+        customPriorityQueue.enqueue(new QueueItem<>(5, "Next"));
+        customPriorityQueue.dequeue();
+        customPriorityQueue.dequeue();
+        Thread.sleep(60);
+
+        QueueItem peeked = customPriorityQueue.peek();
+
+        assertEquals(peeked, customPriorityQueue.dequeue());
+        assertEquals("Next", peeked.getQueueItem());
+    }
+
+    @Test
+    public void should_not_promote_items_without_aging() throws InterruptedException {
+        customPriorityQueue = new CustomPriorityQueue(10, true);
+        customPriorityQueue.enqueue(new QueueItem<>(1, "First"));
+        customPriorityQueue.enqueue(new QueueItem<>(1, "Second"));
+        customPriorityQueue.enqueue(new QueueItem<>(5, "Low"));
+        Thread.sleep(5);
+
+        customPriorityQueue.dequeue();
+
+        assertEquals(Arrays.asList(new QueueItem<>(1, "Second"), new QueueItem<>(5, "Low")),
+                customPriorityQueue.toList());
+        customPriorityQueue.drainTo(new ArrayList<>(), 2);
+        assertEquals(0, customPriorityQueue.getMaximumWaitNanos(5));
+    }
+
+    @Test
+    public void should_dequeue_delayed_item_only_after_delay() throws InterruptedException {
+        customPriorityQueue = new CustomPriorityQueue(10, true);
+        assertTrue(customPriorityQueue.enqueue(new QueueItem<>(1, "Delayed"), 20, TimeUnit.MILLISECONDS));
+        customPriorityQueue.enqueue(new QueueItem<>(2, "Ready"));
+
+        assertEquals("Ready", customPriorityQueue.dequeue().getQueueItem());
+        assertNull(customPriorityQueue.dequeue());
+        assertEquals(1, customPriorityQueue.getDelayedSize());
+
+        Thread.sleep(30);
+
+        assertEquals("Delayed", customPriorityQueue.dequeue().getQueueItem());
+        assertEquals(0, customPriorityQueue.getDelayedSize());
+        assertTrue(customPriorityQueue.isEmpty());
+    }
+
+    @Test
+    public void should_reserve_capacity_for_delayed_items() {
+        customPriorityQueue = new CustomPriorityQueue(2, true);
+        assertTrue(customPriorityQueue.enqueue(new QueueItem<>(1, "Delayed"), 1, TimeUnit.HOURS));
+        customPriorityQueue.enqueue(new QueueItem<>(1, "Ready"));
+
+        assertFalse(customPriorityQueue.hasFreeCapacity());
+        assertNull(customPriorityQueue.enqueue(queueItem));
+        assertFalse(customPriorityQueue.enqueue(queueItem, 1, TimeUnit.HOURS));
+        assertEquals(1, customPriorityQueue.size());
+    }
+
+    @Test
+    public void should_discard_expired_heads_without_counting_burst() {
+        customPriorityQueue = new CustomPriorityQueue(10, true);
+        QueueEventListener eventListener = mock(QueueEventListener.class);
+        customPriorityQueue.setQueueEventListener(eventListener);
+        long expired = System.currentTimeMillis() - 1;
+        customPriorityQueue.enqueue(new QueueItem<>(1, "Expired", expired));
+        customPriorityQueue.enqueue(new QueueItem<>(1, "A"));
+        customPriorityQueue.enqueue(new QueueItem<>(1, "B"));
+        customPriorityQueue.enqueue(new QueueItem<>(1, "C"));
+        customPriorityQueue.enqueue(new QueueItem<>(2, "X", expired));
+        customPriorityQueue.enqueue(new QueueItem<>(2, "Y"));
+
+        List<Object> dequeued = new ArrayList<>();
+        for (QueueItem item = customPriorityQueue.dequeue(); item != null; item = customPriorityQueue.dequeue()) {
+            dequeued.add(item.getQueueItem());
+        }
+
+        assertEquals(Arrays.asList("A", "B", "Y", "C"), dequeued);
+        verify(eventListener).onExpire(1, 5);
+        verify(eventListener).onExpire(2, 2);
+        assertTrue(customPriorityQueue.isEmpty());
+    }
+
+    @Test
+    public void should_remove_expired_items_behind_live_items() {
+        customPriorityQueue = new CustomPriorityQueue(10, true);
+        long expired = System.currentTimeMillis() - 1;
+        customPriorityQueue.enqueue(new QueueItem<>(1, "Live"));
+        customPriorityQueue.enqueue(new QueueItem<>(1, "Expired", expired));
+        customPriorityQueue.enqueue(new QueueItem<>(3, "Expired", expired));
+        customPriorityQueue.enqueue(new QueueItem<>(4, "Live", System.currentTimeMillis() + 60000));
+
+        assertEquals(2, customPriorityQueue.removeExpired(10));
+
+        assertEquals(2, customPriorityQueue.size());
+        assertNull(customPriorityQueue.getFirstNodeByPriority(3));
+        assertEquals(Arrays.asList(new QueueItem<>(1, "Live"), new QueueItem<>(4, "Live")),
+                customPriorityQueue.toList());
+        assertEquals(0, customPriorityQueue.removeExpired(10));
+    }
 }
@@ -0,0 +1,247 @@
+package com.rimidalv.priorityqueue.utility;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class DurablePriorityQueueTest {
+    private static final PayloadSerializer<String> STRING_SERIALIZER = PayloadSerializer.of(
+            value -> value.getBytes(StandardCharsets.UTF_8), payload -> new String(payload, StandardCharsets.UTF_8));
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void should_restore_items_and_burst_counters_after_reopen() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(100, true);
+        try (DurablePriorityQueue<String> durablePriorityQueue = open(directory, customPriorityQueue, 1 << 20)) {
+            enqueueRandomItems(durablePriorityQueue, 30);
+            for (int i = 0; i < 7; i++) durablePriorityQueue.dequeue();
+        }
+
+        CustomPriorityQueue restoredQueue = new CustomPriorityQueue(100, true);
+        try (DurablePriorityQueue<String> durablePriorityQueue = open(directory, restoredQueue, 1 << 20)) {
+            assertEquals(23, durablePriorityQueue.size());
+            assertEquals(customPriorityQueue.getVisitedPrioritesList(), restoredQueue.getVisitedPrioritesList());
+            assertEquals(drain(customPriorityQueue), drain(durablePriorityQueue));
+        }
+    }
+
+    @Test
+    public void should_keep_one_segment_after_checkpoints() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(50, false);
+        try (DurablePriorityQueue<String> durablePriorityQueue = open(directory, customPriorityQueue, 1024)) {
+            Random random = new Random(3);
+            for (int i = 0; i < 2000; i++) {
+                if (random.nextBoolean() && durablePriorityQueue.hasFreeCapacity())
+                    durablePriorityQueue.enqueue(new QueueItem<>(random.nextInt(6), "Item " + i));
+                else
+                    durablePriorityQueue.dequeue();
+            }
+        }
+
+        try (Stream<Path> segments = Files.list(directory)) {
+            assertEquals(1, segments.count());
+        }
+        CustomPriorityQueue restoredQueue = new CustomPriorityQueue(50, false);
+        try (DurablePriorityQueue<String> durablePriorityQueue = open(directory, restoredQueue, 1024)) {
+            assertEquals(drain(customPriorityQueue), drain(durablePriorityQueue));
+        }
+    }
+
+    @Test
+    public void should_restore_items_of_concurrent_producers() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath();
+        try (DurablePriorityQueue<String> durablePriorityQueue = open(directory, new CustomPriorityQueue(400, true), 1 << 20)) {
+            List<Thread> producers = new ArrayList<>();
+            for (int producer = 0; producer < 4; producer++) {
+                int priority = producer;
+                producers.add(new Thread(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        assertTrue(durablePriorityQueue.enqueue(new QueueItem<>(priority, "Item " + i)));
+                    }
+                }));
+            }
+            for (Thread producer : producers) producer.start();
+            for (Thread producer : producers) producer.join();
+        }
+
+        CustomPriorityQueue restoredQueue = new CustomPriorityQueue(400, true);
+        try (DurablePriorityQueue<String> durablePriorityQueue = open(directory, restoredQueue, 1 << 20)) {
+            assertEquals(400, durablePriorityQueue.size());
+            for (int priority = 0; priority < 4; priority++) {
+                assertEquals("Item 0", restoredQueue.getFirstNodeByPriority(priority).getQueueItem().getQueueItem());
+                assertEquals("Item 99", restoredQueue.getLastNodeByPriority(priority).getQueueItem().getQueueItem());
+            }
+        }
+    }
+
+    @Test
+    public void should_restore_items_with_deficit_round_robin_policy() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        try (DurablePriorityQueue<String> durablePriorityQueue =
+                     open(directory, new CustomPriorityQueue(20, 0, new DeficitRoundRobinPolicy()), 1024)) {
+            for (int i = 0; i < 6; i++) durablePriorityQueue.enqueue(new QueueItem<>(i % 2, "Item " + i));
+            for (int i = 0; i < 3; i++) durablePriorityQueue.dequeue();
+        }
+
+        CustomPriorityQueue restoredQueue = new CustomPriorityQueue(20, 0, new DeficitRoundRobinPolicy());
+        try (DurablePriorityQueue<String> durablePriorityQueue = open(directory, restoredQueue, 1024)) {
+            assertEquals(3, durablePriorityQueue.size());
+            assertEquals("Item 4", restoredQueue.getFirstNodeByPriority(0).getQueueItem().getQueueItem());
+            assertEquals("Item 3", restoredQueue.getFirstNodeByPriority(1).getQueueItem().getQueueItem());
+            assertEquals("Item 5", restoredQueue.getLastNodeByPriority(1).getQueueItem().getQueueItem());
+        }
+    }
+
+    @Test
+    public void should_ignore_torn_record_on_recovery() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        try (DurablePriorityQueue<String> durablePriorityQueue = open(directory, new CustomPriorityQueue(10, true), 1024)) {
+            durablePriorityQueue.enqueue(new QueueItem<>(0, "Item 0"));
+            durablePriorityQueue.enqueue(new QueueItem<>(1, "Item 1"));
+        }
+
+        Path segment;
+        try (Stream<Path> segments = Files.list(directory)) {
+            segment = segments.findFirst().orElseThrow(IllegalStateException::new);
+        }
+        byte[] bytes = Files.readAllBytes(segment);
+        int lastWrittenByte = bytes.length - 1;
+        while (bytes[lastWrittenByte] == 0) lastWrittenByte--;
+        bytes[lastWrittenByte] ^= 0x7F;
+        Files.write(segment, bytes);
+
+        CustomPriorityQueue restoredQueue = new CustomPriorityQueue(10, true);
+        try (DurablePriorityQueue<String> durablePriorityQueue = open(directory, restoredQueue, 1024)) {
+            assertEquals(1, durablePriorityQueue.size());
+            assertEquals(new QueueItem<>(0, "Item 0"), durablePriorityQueue.dequeue());
+            assertTrue(durablePriorityQueue.enqueue(new QueueItem<>(2, "Item 2")));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_not_journal_item_with_invalid_priority() throws IOException {
+        try (DurablePriorityQueue<String> durablePriorityQueue =
+                     open(temporaryFolder.getRoot().toPath(), new CustomPriorityQueue(10, true), 1024)) {
+            durablePriorityQueue.enqueue(new QueueItem<>(-1, "Invalid"));
+        }
+    }
+
+    @Test
+    public void should_restore_items_journaled_with_force_window() throws IOException, InterruptedException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(100, true);
+        try (DurablePriorityQueue<String> durablePriorityQueue = new DurablePriorityQueue<>(
+                directory, customPriorityQueue, STRING_SERIALIZER, 1024, 1, TimeUnit.MILLISECONDS)) {
+            for (int i = 0; i < 200; i++) {
+                durablePriorityQueue.enqueue(new QueueItem<>(i % 5, "Item " + i));
+                if (i % 3 != 0) durablePriorityQueue.dequeue();
+                if (i % 50 == 0) Thread.sleep(2);
+            }
+        }
+
+        CustomPriorityQueue restoredQueue = new CustomPriorityQueue(100, true);
+        try (DurablePriorityQueue<String> durablePriorityQueue = open(directory, restoredQueue, 1024)) {
+            assertEquals(customPriorityQueue.size(), durablePriorityQueue.size());
+            assertEquals(drain(customPriorityQueue), drain(durablePriorityQueue));
+        }
+    }
+
+    @Test
+    public void should_replay_discarded_expired_items() throws IOException, InterruptedException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(100, true);
+        long expiration = System.currentTimeMillis() + 50;
+        long lateExpiration = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        try (DurablePriorityQueue<String> durablePriorityQueue = open(directory, customPriorityQueue, 1024)) {
+            for (int i = 0; i < 30; i++) {
+                durablePriorityQueue.enqueue(new QueueItem<>(i % 3, "Item " + i, i % 4 == 0 ? lateExpiration : expiration));
+                durablePriorityQueue.enqueue(new QueueItem<>(i % 3, "Live " + i));
+            }
+            Thread.sleep(80);
+            for (int i = 0; i < 5; i++) durablePriorityQueue.dequeue();
+            assertTrue(durablePriorityQueue.removeExpired(100) > 0);
+        }
+
+        CustomPriorityQueue restoredQueue = new CustomPriorityQueue(100, true);
+        try (DurablePriorityQueue<String> durablePriorityQueue = open(directory, restoredQueue, 1024)) {
+            List<QueueItem> queueItems = customPriorityQueue.toList();
+            List<QueueItem> restoredItems = restoredQueue.toList();
+            assertEquals(queueItems, restoredItems);
+            for (int i = 0; i < queueItems.size(); i++) {
+                assertEquals(queueItems.get(i).getExpirationTime(), restoredItems.get(i).getExpirationTime());
+            }
+            assertEquals(customPriorityQueue.getVisitedPrioritesList(), restoredQueue.getVisitedPrioritesList());
+            assertEquals(drain(customPriorityQueue), drain(durablePriorityQueue));
+        }
+    }
+
+    @Test
+    public void should_reject_aging_which_recovery_can_not_replay() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        CustomPriorityQueue agingQueue = new CustomPriorityQueue(10, 6, new StrictPriorityPolicy());
+        agingQueue.setAging(10, TimeUnit.MILLISECONDS);
+        try {
+            open(directory, agingQueue, 1 << 20);
+            fail("Queue with aging must be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Aging of the queue can not be replayed", e.getMessage());
+        }
+
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(10, 6, new StrictPriorityPolicy());
+        try (DurablePriorityQueue<String> durablePriorityQueue = open(directory, customPriorityQueue, 1 << 20)) {
+            for (int i = 0; i < 3; i++) durablePriorityQueue.enqueue(new QueueItem<>(0, "Item " + i));
+            for (int i = 0; i < 3; i++) durablePriorityQueue.enqueue(new QueueItem<>(5, "Item " + (i + 3)));
+            assertThrows(IllegalStateException.class, () -> customPriorityQueue.setAging(10, TimeUnit.MILLISECONDS));
+            assertThrows(IllegalStateException.class,
+                    () -> customPriorityQueue.enqueue(new QueueItem<>(1, "Delayed"), 10, TimeUnit.MILLISECONDS));
+            for (int i = 0; i < 3; i++) durablePriorityQueue.dequeue();
+        }
+
+        CustomPriorityQueue restoredQueue = new CustomPriorityQueue(10, 6, new StrictPriorityPolicy());
+        try (DurablePriorityQueue<String> durablePriorityQueue = open(directory, restoredQueue, 1 << 20)) {
+            assertEquals(drain(customPriorityQueue), drain(durablePriorityQueue));
+        }
+    }
+
+    private static DurablePriorityQueue<String> open(Path directory, CustomPriorityQueue customPriorityQueue, int segmentSize) throws IOException {
+        return new DurablePriorityQueue<>(directory, customPriorityQueue, STRING_SERIALIZER, segmentSize, true);
+    }
+
+    private static void enqueueRandomItems(DurablePriorityQueue<String> durablePriorityQueue, int count) {
+        Random random = new Random(5);
+        for (int i = 0; i < count; i++) {
+            durablePriorityQueue.enqueue(new QueueItem<>(random.nextInt(5), "Item " + i));
+        }
+    }
+
+    private static List<QueueItem> drain(CustomPriorityQueue customPriorityQueue) {
+        List<QueueItem> queueItems = new ArrayList<>();
+        customPriorityQueue.drainTo(queueItems, Integer.MAX_VALUE);
+        return queueItems;
+    }
+
+    private static List<QueueItem> drain(DurablePriorityQueue<String> durablePriorityQueue) {
+        List<QueueItem> queueItems = new ArrayList<>();
+        for (QueueItem queueItem = durablePriorityQueue.dequeue(); queueItem != null; queueItem = durablePriorityQueue.dequeue()) {
+            queueItems.add(queueItem);
+        }
+        return queueItems;
+    }
+}
@@ -0,0 +1,44 @@
+package com.rimidalv.priorityqueue.utility;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ExpiredItemReaperTest {
+
+    @Test
+    public void should_remove_expired_items_of_whole_queue_in_batches() {
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(100, true);
+        long expired = System.currentTimeMillis() - 1;
+        for (int i = 0; i < 50; i++) {
+            customPriorityQueue.enqueue(new QueueItem<>(i % 5, i));
+            customPriorityQueue.enqueue(new QueueItem<>(i % 5, i, expired));
+        }
+
+        try (ExpiredItemReaper reaper = new ExpiredItemReaper(customPriorityQueue, 1, TimeUnit.HOURS, 7)) {
+            assertEquals(50, reaper.reap());
+        }
+
+        assertEquals(50, customPriorityQueue.size());
+        for (QueueItem queueItem : customPriorityQueue.toList()) {
+            assertFalse(queueItem.isExpiring());
+        }
+    }
+
+    @Test
+    public void should_reap_in_background() throws InterruptedException {
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(10, true);
+        customPriorityQueue.enqueue(new QueueItem<>(1, "Live"));
+        customPriorityQueue.enqueue(new QueueItem<>(1, "Expiring", System.currentTimeMillis() + 10));
+
+        try (ExpiredItemReaper ignored = new ExpiredItemReaper(customPriorityQueue, 5, TimeUnit.MILLISECONDS, 10)) {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (customPriorityQueue.size() > 1 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        }
+
+        assertEquals(1, customPriorityQueue.size());
+    }
+}
@@ -0,0 +1,120 @@
+package com.rimidalv.priorityqueue.utility;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OffHeapPriorityQueueTest {
+
+    @Test
+    public void should_dequeue_payloads_in_priority_order() {
+        OffHeapPriorityQueue offHeapPriorityQueue = new OffHeapPriorityQueue(10, true);
+        offHeapPriorityQueue.enqueue(2, bytes("Payload priority 2"));
+        offHeapPriorityQueue.enqueue(1, bytes("Payload priority 1"));
+
+        QueueItem<byte[]> queueItem = offHeapPriorityQueue.dequeue();
+        assertEquals(1, queueItem.getPriority());
+        assertArrayEquals(bytes("Payload priority 1"), queueItem.getQueueItem());
+        assertArrayEquals(bytes("Payload priority 2"), offHeapPriorityQueue.dequeue().getQueueItem());
+        assertNull(offHeapPriorityQueue.dequeue());
+        assertEquals(0, offHeapPriorityQueue.getPayloadBytes());
+    }
+
+    @Test
+    public void should_release_payload_of_rejected_item() {
+        OffHeapPriorityQueue offHeapPriorityQueue = new OffHeapPriorityQueue(1, true);
+
+        assertTrue(offHeapPriorityQueue.enqueue(1, new byte[100]));
+        assertFalse(offHeapPriorityQueue.enqueue(1, new byte[100]));
+        assertEquals(100, offHeapPriorityQueue.getPayloadBytes());
+    }
+
+    @Test
+    public void should_not_store_payload_of_item_with_invalid_priority() {
+        OffHeapPriorityQueue offHeapPriorityQueue = new OffHeapPriorityQueue(new CustomPriorityQueue(10, true, 4), 1024);
+
+        try {
+            offHeapPriorityQueue.enqueue(10, new byte[100]);
+            fail("Priority out of the range must be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals(0, offHeapPriorityQueue.getPayloadBytes());
+            assertEquals(0, offHeapPriorityQueue.size());
+        }
+    }
+
+    @Test
+    public void should_reuse_released_arenas() {
+        OffHeapPriorityQueue offHeapPriorityQueue = new OffHeapPriorityQueue(new CustomPriorityQueue(100, true), 1024);
+        for (int i = 0; i < 10000; i++) {
+            offHeapPriorityQueue.enqueue(i % 5, new byte[100]);
+            if (offHeapPriorityQueue.size() == 20) {
+                while (!offHeapPriorityQueue.isEmpty()) offHeapPriorityQueue.dequeue();
+            }
+        }
+
+        assertTrue(offHeapPriorityQueue.getReservedBytes() <= 4 * 1024);
+    }
+
+    @Test
+    public void should_move_long_living_payloads_out_of_sparse_arenas() {
+        OffHeapPriorityQueue offHeapPriorityQueue = new OffHeapPriorityQueue(
+                new CustomPriorityQueue(1000, 0, new StrictPriorityPolicy()), 4096);
+        for (int i = 0; i < 200; i++) {
+            offHeapPriorityQueue.enqueue(5, new byte[10]);
+            for (int j = 0; j < 40; j++) {
+                offHeapPriorityQueue.enqueue(1, new byte[100]);
+                offHeapPriorityQueue.dequeue();
+            }
+        }
+
+        assertEquals(2000, offHeapPriorityQueue.getPayloadBytes());
+        assertTrue(offHeapPriorityQueue.getReservedBytes() <= 6 * 4096);
+        for (int i = 0; i < 200; i++) {
+            QueueItem<byte[]> queueItem = offHeapPriorityQueue.dequeue();
+            assertEquals(5, queueItem.getPriority());
+            assertEquals(10, queueItem.getQueueItem().length);
+        }
+        assertEquals(0, offHeapPriorityQueue.getPayloadBytes());
+    }
+
+    @Test
+    public void should_read_moved_payloads() {
+        OffHeapPayloadStore payloadStore = new OffHeapPayloadStore(1024);
+        List<Long> handles = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            long handle = payloadStore.store(bytes("Payload " + i));
+            if (i % 10 == 0) handles.add(handle);
+            else payloadStore.release(handle);
+            payloadStore.release(payloadStore.store(new byte[200]));
+        }
+
+        for (int i = 0; i < handles.size(); i++) {
+            assertArrayEquals(bytes("Payload " + i * 10), payloadStore.read(handles.get(i)));
+        }
+        assertTrue(payloadStore.getReservedBytes() <= 3 * 1024);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_payload_larger_than_arena() {
+        new OffHeapPriorityQueue(new CustomPriorityQueue(10, true), 1024).enqueue(1, new byte[1021]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void should_not_release_payload_twice() {
+        OffHeapPayloadStore payloadStore = new OffHeapPayloadStore(1024);
+        long handle = payloadStore.store(new byte[10]);
+        payloadStore.store(new byte[10]);
+
+        payloadStore.release(handle);
+        payloadStore.release(handle);
+    }
+
+    private static byte[] bytes(String payload) {
+        return payload.getBytes(StandardCharsets.UTF_8);
+    }
+}
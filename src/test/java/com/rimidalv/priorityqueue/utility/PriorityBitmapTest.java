@@ -0,0 +1,84 @@
+package com.rimidalv.priorityqueue.utility;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PriorityBitmapTest {
+
+    private PriorityBitmap priorityBitmap;
+
+    @Before
+    public void setUpTestClass() {
+        priorityBitmap = new PriorityBitmap();
+    }
+
+    @Test
+    public void should_return_minus_one_for_empty_bitmap() {
+        assertEquals(-1, priorityBitmap.nextSetBit(0));
+        assertFalse(priorityBitmap.get(1));
+    }
+
+    @Test
+    public void should_return_next_set_priority_within_the_same_word() {
+        priorityBitmap.set(3);
+        priorityBitmap.set(7);
+
+        assertEquals(3, priorityBitmap.nextSetBit(0));
+        assertEquals(3, priorityBitmap.nextSetBit(3));
+        assertEquals(7, priorityBitmap.nextSetBit(4));
+        assertEquals(-1, priorityBitmap.nextSetBit(8));
+    }
+
+    @Test
+    public void should_return_next_set_priority_across_summary_words() {
+        priorityBitmap.set(1);
+        priorityBitmap.set(500);
+        priorityBitmap.set(10000);
+        priorityBitmap.set(1000000);
+
+        assertEquals(500, priorityBitmap.nextSetBit(2));
+        assertEquals(10000, priorityBitmap.nextSetBit(501));
+        assertEquals(1000000, priorityBitmap.nextSetBit(10001));
+        assertEquals(-1, priorityBitmap.nextSetBit(1000001));
+    }
+
+    @Test
+    public void should_return_previous_set_priority_across_summary_words() {
+        priorityBitmap.set(0);
+        priorityBitmap.set(500);
+        priorityBitmap.set(10000);
+        priorityBitmap.set(1000000);
+
+        assertEquals(1000000, priorityBitmap.previousSetBit(16000000));
+        assertEquals(10000, priorityBitmap.previousSetBit(999999));
+        assertEquals(500, priorityBitmap.previousSetBit(9999));
+        assertEquals(500, priorityBitmap.previousSetBit(500));
+        assertEquals(0, priorityBitmap.previousSetBit(499));
+        assertEquals(-1, new PriorityBitmap().previousSetBit(100));
+    }
+
+    @Test
+    public void should_skip_cleared_priorities() {
+        priorityBitmap.set(64);
+        priorityBitmap.set(4096);
+        priorityBitmap.set(5000);
+
+        priorityBitmap.clear(64);
+        priorityBitmap.clear(4096);
+
+        assertFalse(priorityBitmap.get(64));
+        assertEquals(5000, priorityBitmap.nextSetBit(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_negative_priority() {
+        priorityBitmap.set(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_priority_out_of_range() {
+        priorityBitmap.set(PriorityBitmap.MAX_PRIORITY + 1);
+    }
+}
@@ -0,0 +1,160 @@
+package com.rimidalv.priorityqueue.utility;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class QueueSnapshotTest {
+    private static final PayloadSerializer<String> STRING_SERIALIZER = PayloadSerializer.of(
+            value -> value.getBytes(StandardCharsets.UTF_8), payload -> new String(payload, StandardCharsets.UTF_8));
+
+    @Test
+    public void should_restore_items_settings_and_burst_counters() throws IOException {
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(200, true, 16);
+        Random random = new Random(7);
+        for (int i = 0; i < 150; i++) customPriorityQueue.enqueue(new QueueItem<>(random.nextInt(16), "Item " + i));
+        for (int i = 0; i < 40; i++) customPriorityQueue.dequeue();
+
+        byte[] snapshot = write(customPriorityQueue);
+        CustomPriorityQueue restoredQueue = restore(snapshot);
+
+        assertEquals(200, restoredQueue.getMaximumCapacity());
+        assertEquals(16, restoredQueue.getPriorityRange());
+        assertTrue(((BurstRatePolicy) restoredQueue.getSchedulingPolicy()).isInDepthSearch());
+        assertEquals(customPriorityQueue.toList(), restoredQueue.toList());
+        assertEquals(customPriorityQueue.getVisitedPrioritesList(), restoredQueue.getVisitedPrioritesList());
+        assertEquals(drain(customPriorityQueue), drain(restoredQueue));
+    }
+
+    @Test
+    public void should_restore_empty_queue() throws IOException {
+        CustomPriorityQueue restoredQueue = restore(write(new CustomPriorityQueue(5, false)));
+
+        assertTrue(restoredQueue.isEmpty());
+        assertEquals(5, restoredQueue.getMaximumCapacity());
+        restoredQueue.enqueue(new QueueItem<>(3, "Item"));
+        assertEquals(new QueueItem<>(3, "Item"), restoredQueue.dequeue());
+    }
+
+    @Test
+    public void should_restore_payloads_larger_than_buffer() throws IOException {
+        char[] value = new char[200_000];
+        Arrays.fill(value, 'x');
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(5, false);
+        customPriorityQueue.enqueue(new QueueItem<>(1, "Small"));
+        customPriorityQueue.enqueue(new QueueItem<>(0, new String(value)));
+        customPriorityQueue.enqueue(new QueueItem<>(1, "Last"));
+
+        assertEquals(customPriorityQueue.toList(), restore(write(customPriorityQueue)).toList());
+    }
+
+    @Test
+    public void should_restore_with_specified_policy() throws IOException {
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(10, 0, new DeficitRoundRobinPolicy());
+        for (int i = 0; i < 4; i++) customPriorityQueue.enqueue(new QueueItem<>(i % 2, "Item " + i));
+
+        CustomPriorityQueue restoredQueue = QueueSnapshot.restore(
+                Channels.newChannel(new ByteArrayInputStream(write(customPriorityQueue))), STRING_SERIALIZER, new DeficitRoundRobinPolicy());
+
+        assertEquals(customPriorityQueue.toList(), restoredQueue.toList());
+        assertEquals(drain(customPriorityQueue), drain(restoredQueue));
+    }
+
+    @Test(expected = EOFException.class)
+    public void should_reject_truncated_snapshot() throws IOException {
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(10, false);
+        customPriorityQueue.enqueue(new QueueItem<>(1, "Item"));
+        byte[] snapshot = write(customPriorityQueue);
+
+        restore(Arrays.copyOf(snapshot, snapshot.length - 3));
+    }
+
+    @Test
+    public void should_restore_delayed_items_with_remaining_delay() throws IOException, InterruptedException {
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(3, false);
+        customPriorityQueue.enqueue(new QueueItem<>(1, "Item"));
+        customPriorityQueue.enqueue(new QueueItem<>(0, "Soon"), 50, TimeUnit.MILLISECONDS);
+        customPriorityQueue.enqueue(new QueueItem<>(0, "Later"), 1, TimeUnit.HOURS);
+
+        byte[] snapshot = write(customPriorityQueue);
+        CustomPriorityQueue restoredQueue = restore(snapshot);
+
+        assertEquals(1, restoredQueue.size());
+        assertEquals(2, restoredQueue.getDelayedSize());
+        assertFalse(restoredQueue.hasFreeCapacity());
+        Thread.sleep(100);
+        assertEquals(new QueueItem<>(0, "Soon"), restoredQueue.dequeue());
+        assertEquals(new QueueItem<>(1, "Item"), restoredQueue.dequeue());
+        assertNull(restoredQueue.dequeue());
+        assertEquals(1, restoredQueue.getDelayedSize());
+    }
+
+    @Test
+    public void should_restore_expiration_times() throws IOException, InterruptedException {
+        long expirationTime = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(5, false);
+        customPriorityQueue.enqueue(new QueueItem<>(1, "Expiring", expirationTime));
+        customPriorityQueue.enqueue(new QueueItem<>(1, "Item"));
+        customPriorityQueue.enqueue(new QueueItem<>(0, "Expired", System.currentTimeMillis() - 1));
+        customPriorityQueue.enqueue(new QueueItem<>(0, "Delayed", expirationTime + 1), 1, TimeUnit.MILLISECONDS);
+
+        CustomPriorityQueue restoredQueue = restore(write(customPriorityQueue));
+        Thread.sleep(20);
+
+        QueueItem delayedItem = restoredQueue.dequeue();
+        assertEquals(new QueueItem<>(0, "Delayed"), delayedItem);
+        assertEquals(expirationTime + 1, delayedItem.getExpirationTime());
+        QueueItem expiringItem = restoredQueue.dequeue();
+        assertEquals(new QueueItem<>(1, "Expiring"), expiringItem);
+        assertEquals(expirationTime, expiringItem.getExpirationTime());
+        assertEquals(QueueItem.NO_EXPIRATION, restoredQueue.dequeue().getExpirationTime());
+        assertNull(restoredQueue.dequeue());
+    }
+
+    @Test
+    public void should_restore_items_of_version_2_without_expiration() throws IOException {
+        byte[] payload = "Item".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer snapshot = ByteBuffer.allocate(256);
+        snapshot.putInt(0x43505153).putInt(2).putInt(5).putInt(0).put((byte) 0).putInt(0).put((byte) 0);
+        snapshot.putInt(1).putInt(3).putInt(1).putInt(payload.length).put(payload);
+        snapshot.putInt(1).putInt(2).putLong(0).putInt(payload.length).put(payload);
+        snapshot.putInt(0).putInt(0).putInt(0x43505153);
+
+        CustomPriorityQueue restoredQueue = restore(Arrays.copyOf(snapshot.array(), snapshot.position()));
+
+        assertEquals(new QueueItem<>(2, "Item"), restoredQueue.dequeue());
+        QueueItem queueItem = restoredQueue.dequeue();
+        assertEquals(new QueueItem<>(3, "Item"), queueItem);
+        assertEquals(QueueItem.NO_EXPIRATION, queueItem.getExpirationTime());
+    }
+
+    private static byte[] write(CustomPriorityQueue customPriorityQueue) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        QueueSnapshot.write(customPriorityQueue, Channels.newChannel(outputStream), STRING_SERIALIZER);
+        return outputStream.toByteArray();
+    }
+
+    private static CustomPriorityQueue restore(byte[] snapshot) throws IOException {
+        return QueueSnapshot.restore(Channels.newChannel(new ByteArrayInputStream(snapshot)), STRING_SERIALIZER);
+    }
+
+    private static List<QueueItem> drain(CustomPriorityQueue customPriorityQueue) {
+        List<QueueItem> queueItems = new ArrayList<>();
+        customPriorityQueue.drainTo(queueItems, Integer.MAX_VALUE);
+        return queueItems;
+    }
+}
@@ -0,0 +1,203 @@
+package com.rimidalv.priorityqueue.utility;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class SchedulingPolicyTest {
+
+    @Test
+    public void should_dequeue_highest_priority_with_strict_priority_policy() {
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(10, 0, new StrictPriorityPolicy());
+        enqueue(customPriorityQueue, 2, 1, 1, 1, 1, 2);
+
+        assertEquals(list(1, 1, 1, 1, 2, 2), priorities(customPriorityQueue));
+    }
+
+    @Test
+    public void should_dequeue_burst_size_items_of_priority_in_a_row() {
+        CustomPriorityQueue customPriorityQueue =
+                new CustomPriorityQueue(10, 0, new BurstRatePolicy(3, true, 0));
+        enqueue(customPriorityQueue, 1, 1, 1, 1, 1, 2, 2);
+
+        assertEquals(list(1, 1, 1, 2, 1, 1, 2), priorities(customPriorityQueue));
+    }
+
+    @Test
+    public void should_dequeue_in_default_order_with_burst_size_two() {
+        CustomPriorityQueue defaultQueue = new CustomPriorityQueue(20, true);
+        CustomPriorityQueue customPriorityQueue =
+                new CustomPriorityQueue(20, 0, new BurstRatePolicy(2, true, 0));
+        enqueue(defaultQueue, 1, 1, 1, 1, 2, 2, 2, 3, 3, 4);
+        enqueue(customPriorityQueue, 1, 1, 1, 1, 2, 2, 2, 3, 3, 4);
+
+        assertEquals(priorities(defaultQueue), priorities(customPriorityQueue));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_not_positive_burst_size() {
+        new BurstRatePolicy(0, true, 0);
+    }
+
+    @Test
+    public void should_continue_burst_of_priority_drained_for_a_while() {
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(10, true);
+        enqueue(customPriorityQueue, 1);
+        assertEquals(1, customPriorityQueue.dequeue().getPriority());
+
+        enqueue(customPriorityQueue, 1, 1, 2);
+
+        assertEquals(list(1, 2, 1), priorities(customPriorityQueue));
+    }
+
+    @Test
+    public void should_drop_visit_counters_of_drained_priorities() {
+        for (int priorityRange : new int[] {0, 1000}) {
+            CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(10, true, priorityRange);
+            for (int priority = 0; priority < 1000; priority++) {
+                enqueue(customPriorityQueue, priority, priority, priority);
+                priorities(customPriorityQueue);
+            }
+
+            assertTrue(customPriorityQueue.getVisitedPrioritesList().size() <= BurstRatePolicy.RETAINED_DRAINED_PRIORITIES + 1);
+        }
+    }
+
+    @Test
+    public void should_move_burst_through_all_due_priorities() {
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(10, true);
+        enqueue(customPriorityQueue, 1, 3, 5, 7);
+        BurstRatePolicy burstRatePolicy = (BurstRatePolicy) customPriorityQueue.getSchedulingPolicy();
+        burstRatePolicy.setVisitedPriority(5, 2);
+        burstRatePolicy.setVisitedPriority(3, 2);
+
+        assertEquals(7, customPriorityQueue.dequeue().getPriority());
+        assertEquals(0, (int) customPriorityQueue.getVisitedPrioritesList().get(3));
+        assertEquals(0, (int) customPriorityQueue.getVisitedPrioritesList().get(5));
+        assertEquals(1, customPriorityQueue.dequeue().getPriority());
+    }
+
+    @Test
+    public void should_dequeue_priorities_by_weight_with_deficit_round_robin_policy() {
+        CustomPriorityQueue customPriorityQueue =
+                new CustomPriorityQueue(20, 0, new DeficitRoundRobinPolicy(priority -> priority == 1 ? 3 : 1));
+        enqueue(customPriorityQueue, 1, 1, 1, 1, 1, 1, 2, 2, 2, 5);
+
+        assertEquals(list(1, 1, 1, 2, 5, 1, 1, 1, 2, 2), priorities(customPriorityQueue));
+    }
+
+    @Test
+    public void should_add_new_priority_to_end_of_round() {
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(20, 0, new DeficitRoundRobinPolicy());
+        enqueue(customPriorityQueue, 3, 3, 7);
+
+        assertEquals(3, customPriorityQueue.dequeue().getPriority());
+        customPriorityQueue.enqueue(new QueueItem<>(1, "Queue item priority 1"));
+
+        assertEquals(list(7, 3, 1), priorities(customPriorityQueue));
+    }
+
+    @Test
+    public void should_peek_without_changing_policy_state() {
+        CustomPriorityQueue customPriorityQueue =
+                new CustomPriorityQueue(20, 0, new DeficitRoundRobinPolicy(priority -> 2));
+        enqueue(customPriorityQueue, 1, 1, 1, 2, 2);
+
+        assertEquals(1, customPriorityQueue.dequeue().getPriority());
+        assertEquals(1, customPriorityQueue.peek().getPriority());
+        assertEquals(1, customPriorityQueue.peek().getPriority());
+        assertEquals(list(1, 2, 2, 1), priorities(customPriorityQueue));
+    }
+
+    @Test
+    public void should_peek_item_which_dequeue_returns_with_every_policy() {
+        List<Supplier<SchedulingPolicy>> policies = Arrays.asList(
+                StrictPriorityPolicy::new,
+                () -> new DeficitRoundRobinPolicy(priority -> priority % 3 + 1),
+                () -> new BurstRatePolicy(2, true, 0),
+                () -> new BurstRatePolicy(2, false, 0),
+                () -> new BurstRatePolicy(3, true, 16),
+                () -> new BurstRatePolicy(1, false, 16));
+        for (Supplier<SchedulingPolicy> policy : policies) {
+            for (int priorities : new int[] {3, 16}) {
+                CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(64, 16, policy.get());
+                Random random = new Random(11);
+                for (int i = 0; i < 5000; i++) {
+                    if (random.nextInt(5) < 3 && customPriorityQueue.hasFreeCapacity()) {
+                        long expirationTime = random.nextInt(10) == 0 ? System.currentTimeMillis() - 1 : QueueItem.NO_EXPIRATION;
+                        customPriorityQueue.enqueue(new QueueItem<>(random.nextInt(priorities), "Item " + i, expirationTime));
+                    } else {
+                        QueueItem peekedItem = customPriorityQueue.peek();
+                        assertSame(peekedItem, customPriorityQueue.peek());
+                        assertSame(peekedItem, customPriorityQueue.dequeue());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void should_report_available_priorities_to_new_policy() {
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(20, true);
+        enqueue(customPriorityQueue, 4, 4, 9);
+
+        customPriorityQueue.setSchedulingPolicy(new DeficitRoundRobinPolicy());
+
+        assertEquals(list(4, 9, 4), priorities(customPriorityQueue));
+        assertTrue(customPriorityQueue.getVisitedPrioritesList().isEmpty());
+    }
+
+    @Test
+    public void should_move_burst_over_gap_to_next_available_priority_without_in_depth_search() {
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(200, false);
+        for (int i = 0; i < 100; i++) enqueue(customPriorityQueue, 1);
+        enqueue(customPriorityQueue, 3, 500);
+
+        assertEquals(list(1, 1, 3, 1, 1, 500, 1, 1), priorities(customPriorityQueue).subList(0, 8));
+    }
+
+    @Test
+    public void should_serve_lowest_priority_again_at_end_of_queue_with_in_depth_search() {
+        CustomPriorityQueue inDepthQueue = new CustomPriorityQueue(20, true);
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(20, false);
+        for (int priority = 0; priority < 3; priority++) {
+            for (int i = 0; i < priority * 4 + 1; i++) {
+                enqueue(inDepthQueue, priority);
+                enqueue(customPriorityQueue, priority);
+            }
+        }
+
+        assertEquals(list(0, 1, 1, 2, 1, 1, 2, 2, 1, 2, 2, 2, 2, 2, 2), priorities(inDepthQueue));
+        assertEquals(list(0, 1, 1, 2, 1, 1, 2, 1, 2, 2, 2, 2, 2, 2, 2), priorities(customPriorityQueue));
+    }
+
+    private static void enqueue(CustomPriorityQueue customPriorityQueue, int... priorities) {
+        for (int priority : priorities) {
+            customPriorityQueue.enqueue(new QueueItem<>(priority, "Queue item priority " + priority));
+        }
+    }
+
+    private static List<Integer> priorities(CustomPriorityQueue customPriorityQueue) {
+        List<QueueItem> queueItems = new ArrayList<>();
+        customPriorityQueue.drainTo(queueItems, Integer.MAX_VALUE);
+
+        List<Integer> priorities = new ArrayList<>();
+        for (QueueItem queueItem : queueItems) {
+            priorities.add(queueItem.getPriority());
+        }
+        return priorities;
+    }
+
+    private static List<Integer> list(Integer... priorities) {
+        List<Integer> list = new ArrayList<>();
+        for (Integer priority : priorities) list.add(priority);
+        return list;
+    }
+}
@@ -58,7 +58,7 @@ public class ServiceEndToEndTest {
 
     @Test
     public void should_dequeue_element_and_trigger_burst_rate_for_priority_2() throws InterruptedException {
-        customPriorityQueue.getVisitedPrioritesList().put(1,2);
+        setVisitedPriority(1, 2);
 
         queueService.dequeue();
 
@@ -76,9 +76,9 @@ public class ServiceEndToEndTest {
     @Test
     public void should_dequeue_element_and_trigger_burst_rate_for_multiple_priorities() throws InterruptedException {
         QueueItem<String> queueItemLevel5 = new QueueItem<>(5, "Queue item priority 5");
-        customPriorityQueue.getVisitedPrioritesList().put(1, 2);
-        customPriorityQueue.getVisitedPrioritesList().put(2, 2);
-        customPriorityQueue.getVisitedPrioritesList().put(3, 2);
+        setVisitedPriority(1, 2);
+        setVisitedPriority(2, 2);
+        setVisitedPriority(3, 2);
         customPriorityQueue.enqueue(queueItemLevel5);
 
         queueService.dequeue();
@@ -113,8 +113,8 @@ public class ServiceEndToEndTest {
         AtomicBoolean isFinished = new AtomicBoolean(false);
         service.submit(() -> {
             queueService.dequeue();
-            latch.countDown();
             isFinished.set(true);
+            latch.countDown();
         });
 
         Thread.sleep(500);
@@ -140,8 +140,8 @@ public class ServiceEndToEndTest {
         AtomicBoolean isFinished = new AtomicBoolean(false);
         service.submit(() -> {
             queueService.enqueue(queueItemLevel2);
-            latch.countDown();
             isFinished.set(true);
+            latch.countDown();
         });
 
         Thread.sleep(500);
@@ -228,6 +228,32 @@ public class ServiceEndToEndTest {
         assertTrue(customPriorityQueue.isEmpty());
     }
 
+    @Test
+    public void should_drain_the_same_sequence_as_consecutive_dequeues() {
+        CustomPriorityQueue drainedQueue = new CustomPriorityQueue(35, false);
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(35, false);
+        QueueService.deleteQueueService();
+        QueueService queueService = QueueService.getInstance(drainedQueue);
+
+        LinkedList<QueueItem> linkedList = this.populateQueueItemList();
+        linkedList.forEach(customPriorityQueue::enqueue);
+        linkedList.forEach(drainedQueue::enqueue);
+
+        List<QueueItem> drained = new ArrayList<>();
+        assertEquals(10, queueService.drainTo(drained, 10));
+        assertEquals(25, queueService.drainTo(drained, 64));
+
+        for (QueueItem queueItem : drained) {
+            QueueItem dequeued = customPriorityQueue.dequeue();
+            while (dequeued == null) {
+                dequeued = customPriorityQueue.dequeue();
+            }
+            assertEquals(dequeued, queueItem);
+        }
+        assertTrue(drainedQueue.isEmpty());
+        assertEquals(customPriorityQueue.getVisitedPrioritesList(), drainedQueue.getVisitedPrioritesList());
+    }
+
     @Test
     public void use_case_randomly_inserted_items() {
         CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(10, false);
@@ -508,4 +534,8 @@ public class ServiceEndToEndTest {
         }
     }
 
+    private void setVisitedPriority(int priority, int timesVisited) {
+        ((BurstRatePolicy) customPriorityQueue.getSchedulingPolicy()).setVisitedPriority(priority, timesVisited);
+    }
+
 }
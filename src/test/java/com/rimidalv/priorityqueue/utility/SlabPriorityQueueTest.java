@@ -0,0 +1,78 @@
+package com.rimidalv.priorityqueue.utility;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SlabPriorityQueueTest {
+
+    @Test
+    public void should_not_enqueue_item_queue_at_max_capacity() {
+        SlabPriorityQueue slabPriorityQueue = new SlabPriorityQueue(1, 5, true);
+
+        assertTrue(slabPriorityQueue.enqueue(new QueueItem<>(1, "Queue item priority 1")));
+        assertFalse(slabPriorityQueue.enqueue(new QueueItem<>(2, "Queue item priority 2")));
+        assertFalse(slabPriorityQueue.hasFreeCapacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_priority_out_of_priority_range() {
+        new SlabPriorityQueue(10, 5, true).enqueue(new QueueItem<>(5, "Out of range priority"));
+    }
+
+    @Test
+    public void should_dequeue_in_the_same_order_as_custom_priority_queue() {
+        for (boolean inDepthSearch : new boolean[] {true, false}) {
+            SlabPriorityQueue slabPriorityQueue = new SlabPriorityQueue(50, 8, inDepthSearch);
+            CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(50, inDepthSearch);
+            Random random = new Random(11);
+            for (int i = 0; i < 1000; i++) {
+                if (random.nextInt(3) != 0 && slabPriorityQueue.hasFreeCapacity()) {
+                    QueueItem<Integer> queueItem = new QueueItem<>(random.nextInt(8), i);
+                    assertTrue(slabPriorityQueue.enqueue(queueItem));
+                    customPriorityQueue.enqueue(queueItem);
+                } else {
+                    assertEquals(customPriorityQueue.dequeue(), slabPriorityQueue.dequeue());
+                }
+                assertEquals(customPriorityQueue.toList(), slabPriorityQueue.toList());
+            }
+        }
+    }
+
+    @Test
+    public void should_reuse_freed_slots() {
+        SlabPriorityQueue slabPriorityQueue = new SlabPriorityQueue(2, 3, true);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(slabPriorityQueue.enqueue(new QueueItem<>(i % 3, i)));
+            assertTrue(slabPriorityQueue.enqueue(new QueueItem<>(2, i)));
+            assertNotNull(slabPriorityQueue.dequeue());
+            assertNotNull(slabPriorityQueue.dequeue());
+        }
+        assertTrue(slabPriorityQueue.isEmpty());
+        assertNull(slabPriorityQueue.dequeue());
+    }
+
+    @Test
+    public void should_remove_item_from_middle_of_priority() {
+        SlabPriorityQueue slabPriorityQueue = new SlabPriorityQueue(5, 3, true);
+        QueueItem<String> first = new QueueItem<>(1, "First");
+        QueueItem<String> second = new QueueItem<>(1, "Second");
+        QueueItem<String> third = new QueueItem<>(1, "Third");
+        slabPriorityQueue.enqueue(first);
+        slabPriorityQueue.enqueue(second);
+        slabPriorityQueue.enqueue(third);
+
+        assertTrue(slabPriorityQueue.remove(second));
+        assertFalse(slabPriorityQueue.remove(second));
+
+        List<QueueItem> drained = new ArrayList<>();
+        assertEquals(2, slabPriorityQueue.drainTo(drained, 5));
+        assertEquals(first, drained.get(0));
+        assertEquals(third, drained.get(1));
+    }
+}
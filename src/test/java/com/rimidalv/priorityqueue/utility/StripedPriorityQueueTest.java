@@ -0,0 +1,89 @@
+package com.rimidalv.priorityqueue.utility;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StripedPriorityQueueTest {
+
+    @Test
+    public void should_not_enqueue_item_queue_at_max_capacity() {
+        StripedPriorityQueue stripedPriorityQueue = new StripedPriorityQueue(1, true);
+
+        assertTrue(stripedPriorityQueue.enqueue(new QueueItem<>(1, "Queue item priority 1")));
+        assertFalse(stripedPriorityQueue.enqueue(new QueueItem<>(2, "Queue item priority 2")));
+        assertFalse(stripedPriorityQueue.hasFreeCapacity());
+    }
+
+    @Test
+    public void should_dequeue_in_the_same_order_as_custom_priority_queue() {
+        for (boolean inDepthSearch : new boolean[] {true, false}) {
+            StripedPriorityQueue stripedPriorityQueue = new StripedPriorityQueue(200, inDepthSearch);
+            CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(200, inDepthSearch);
+            Random random = new Random(42);
+            for (int i = 0; i < 200; i++) {
+                QueueItem<Integer> queueItem = new QueueItem<>(random.nextInt(6), i);
+                stripedPriorityQueue.enqueue(queueItem);
+                customPriorityQueue.enqueue(queueItem);
+            }
+
+            while (!customPriorityQueue.isEmpty()) {
+                assertEquals(customPriorityQueue.dequeue(), stripedPriorityQueue.dequeue());
+            }
+            assertTrue(stripedPriorityQueue.isEmpty());
+        }
+    }
+
+    @Test
+    public void should_enqueue_from_concurrent_producers_without_losing_items() throws InterruptedException {
+        int producers = 4;
+        int itemsPerProducer = 10000;
+        StripedPriorityQueue stripedPriorityQueue = new StripedPriorityQueue(producers * itemsPerProducer, true);
+        ExecutorService service = Executors.newFixedThreadPool(producers + 1);
+        CountDownLatch latch = new CountDownLatch(producers);
+        for (int producer = 0; producer < producers; producer++) {
+            int priority = producer;
+            service.submit(() -> {
+                for (int i = 0; i < itemsPerProducer; i++) {
+                    stripedPriorityQueue.enqueue(new QueueItem<>(priority, priority * itemsPerProducer + i));
+                }
+                latch.countDown();
+            });
+        }
+
+        Set<Object> dequeued = new HashSet<>();
+        while (latch.getCount() > 0 || !stripedPriorityQueue.isEmpty()) {
+            QueueItem queueItem = stripedPriorityQueue.dequeue();
+            if (queueItem != null) dequeued.add(queueItem.getQueueItem());
+        }
+        service.shutdown();
+        assertTrue(service.awaitTermination(1, TimeUnit.SECONDS));
+
+        assertEquals(producers * itemsPerProducer, dequeued.size());
+        assertTrue(stripedPriorityQueue.isEmpty());
+    }
+
+    @Test
+    public void should_drop_burst_counters_of_drained_priorities_as_custom_priority_queue() {
+        StripedPriorityQueue stripedPriorityQueue = new StripedPriorityQueue(1000, true);
+        CustomPriorityQueue customPriorityQueue = new CustomPriorityQueue(1000, true);
+        for (int priority = 0; priority < BurstRatePolicy.RETAINED_DRAINED_PRIORITIES * 3; priority++) {
+            QueueItem<Integer> queueItem = new QueueItem<>(priority, priority);
+            stripedPriorityQueue.enqueue(queueItem);
+            customPriorityQueue.enqueue(queueItem);
+            assertEquals(customPriorityQueue.dequeue(), stripedPriorityQueue.dequeue());
+        }
+
+        assertEquals(customPriorityQueue.getVisitedPrioritesList(), stripedPriorityQueue.getVisitedPrioritesList());
+        assertTrue(stripedPriorityQueue.getVisitedPrioritesList().size() <= BurstRatePolicy.RETAINED_DRAINED_PRIORITIES + 1);
+    }
+}
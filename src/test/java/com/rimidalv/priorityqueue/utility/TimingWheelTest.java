@@ -0,0 +1,82 @@
+package com.rimidalv.priorityqueue.utility;
+
+import com.rimidalv.priorityqueue.domain.QueueItem;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelTest {
+    private static final long TICK = 10;
+
+    private TimingWheel timingWheel;
+
+    @Before
+    public void setUpTestClass() {
+        timingWheel = new TimingWheel(TICK, 0);
+    }
+
+    @Test
+    public void should_expire_item_at_deadline_rounded_up_to_tick() {
+        timingWheel.add(new QueueItem<>(1, "Item"), 0, 25);
+        List<QueueItem> expiredItems = new ArrayList<>();
+
+        assertEquals(0, timingWheel.advance(29, expiredItems));
+        assertEquals(1, timingWheel.advance(30, expiredItems));
+        assertEquals(new QueueItem<>(1, "Item"), expiredItems.get(0));
+        assertEquals(0, timingWheel.size());
+    }
+
+    @Test
+    public void should_expire_items_of_all_levels_in_deadline_order() {
+        Random random = new Random(42);
+        long[] deadlines = new long[10000];
+        for (int i = 0; i < deadlines.length; i++) {
+            long delay = (long) (Math.pow(64, random.nextInt(5)) * random.nextDouble() * TICK) + 1;
+            deadlines[i] = (delay + TICK - 1) / TICK * TICK;
+            timingWheel.add(new QueueItem<>(1, i), 0, delay);
+        }
+
+        List<QueueItem> expiredItems = new ArrayList<>();
+        long now = 0;
+        long lastDeadline = 0;
+        while (timingWheel.size() > 0) {
+            now += random.nextInt(5000);
+            expiredItems.clear();
+            timingWheel.advance(now, expiredItems);
+            for (QueueItem expiredItem : expiredItems) {
+                long deadline = deadlines[(Integer) expiredItem.getQueueItem()];
+                assertTrue(deadline <= now);
+                assertTrue(deadline > now - 5000);
+                assertTrue(deadline >= lastDeadline);
+                lastDeadline = deadline;
+            }
+        }
+    }
+
+    @Test
+    public void should_keep_item_with_longest_delay() {
+        timingWheel.add(new QueueItem<>(1, "Item"), 100, Long.MAX_VALUE);
+        List<QueueItem> expiredItems = new ArrayList<>();
+
+        timingWheel.advance(Long.MAX_VALUE / 2, expiredItems);
+
+        assertTrue(expiredItems.isEmpty());
+        assertEquals(1, timingWheel.size());
+    }
+
+    @Test
+    public void should_report_delay_until_next_slot() {
+        assertEquals(Long.MAX_VALUE, timingWheel.nextEventDelay(0));
+        timingWheel.add(new QueueItem<>(1, "Item"), 0, 25);
+
+        assertEquals(25, timingWheel.nextEventDelay(5));
+        assertEquals(0, timingWheel.nextEventDelay(40));
+        timingWheel.advance(40, new ArrayList<>());
+        assertEquals(Long.MAX_VALUE, timingWheel.nextEventDelay(40));
+    }
+}